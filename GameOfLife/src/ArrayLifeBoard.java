@@ -0,0 +1,142 @@
+import java.util.Arrays;
+
+/**
+ * A LifeBoard that stores one boolean for each cell and computes the next generation one cell at a time by counting
+ * the living cells among its eight neighbors. This is the direct way of playing the game, and it is the reference
+ * that the faster boards are checked against.
+ *
+ * The board is double-buffered: two arrays are allocated when the board is created, and each new generation is
+ * written into the array that held the previous one. Neither stepping nor clearing the board allocates memory.
+ *
+ * As in a PackedLifeBoard, the first call to getHash() computes the hash from scratch, and after that setAlive() and
+ * step() keep it up to date by XORing in the hashes of the cells that they change.
+ */
+public class ArrayLifeBoard implements LifeBoard {
+
+    private final int rows;  // Number of rows on the board.
+    private final int columns;  // Number of columns on the board.
+
+    private boolean[][] alive;  // alive[r][c] is true if the cell in row r, column c is alive.
+    private boolean[][] newBoard;  // Space for computing the next generation; swapped with alive after each step.
+    private LifeRule rule = LifeRule.CONWAY;  // The rule that gives the next state of each cell.
+    private boolean hashing;  // Set to true by the first call to getHash(); after that, hash is kept up to date.
+    private long hash;  // The hash of the current generation, if hashing is true.
+
+    /**
+     * Create a board with the given number of rows and columns, in which every cell is dead.
+     */
+    public ArrayLifeBoard( int rows, int columns ) {
+        if ( rows <= 0 || columns <= 0 )
+            throw new IllegalArgumentException( "Rows and columns must be greater than zero." );
+        this.rows = rows;
+        this.columns = columns;
+        alive = new boolean[ rows ][ columns ];
+        newBoard = new boolean[ rows ][ columns ];
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    public int getColumnCount() {
+        return columns;
+    }
+
+    public boolean isAlive( int row, int col ) {
+        return alive[row][col];
+    }
+
+    public void setAlive( int row, int col, boolean alive ) {
+        if ( hashing && this.alive[row][col] != alive )
+            hash ^= LifeBoard.cellHash( row, col );
+        this.alive[row][col] = alive;
+    }
+
+    public void setAliveRun( int row, int col, int length ) {
+        if ( hashing ) {
+            for ( int c = col; c < col + length; c++ ) {
+                if ( ! alive[row][c] )
+                    hash ^= LifeBoard.cellHash( row, c );
+            }
+        }
+        Arrays.fill( alive[row], col, col + length, true );
+    }
+
+    public void clear() {
+        for ( boolean[] row : alive )
+            Arrays.fill( row, false );
+        hash = 0;
+    }
+
+    /**
+     * Return the hash of the board, as described in the LifeBoard interface. The first call looks at every cell, and
+     * turns on the incremental updating of the hash in all later steps and edits.
+     */
+    public long getHash() {
+        if ( ! hashing ) {
+            hash = LifeBoard.super.getHash();
+            hashing = true;
+        }
+        return hash;
+    }
+
+    public LifeRule getRule() {
+        return rule;
+    }
+
+    public void setRule( LifeRule rule ) {
+        this.rule = rule;
+    }
+
+    /**
+     * Compute the next generation of cells into the "newBoard" array, then swap the two arrays so that "alive" holds
+     * the new generation.
+     */
+    public void step() {
+
+        final LifeRule rule = this.rule;
+        final boolean hashing = this.hashing;
+        long hashChange = 0;  // The XOR of the hashes of the cells that change.
+        for ( int r = 0; r < rows; r++ ) {
+            int above, below;  // rows considered above and below row number r.
+            int left, right;  // columns considered left and right of column c.
+
+            above = r > 0 ? r - 1 : rows - 1;
+            below = r < rows - 1 ? r + 1 : 0;
+
+            for ( int c = 0; c < columns; c++ ) {
+                left = c > 0 ? c - 1 : columns - 1;
+                right = c < columns - 1 ? c + 1 : 0;
+
+                int n = 0;  // number of alive cells in the 8 neighboring cells.
+
+                if ( alive[above][left] )
+                    n++;
+                if ( alive[above][c] )
+                    n++;
+                if ( alive[above][right] )
+                    n++;
+                if ( alive[r][left] )
+                    n++;
+                if ( alive[r][right] )
+                    n++;
+                if ( alive[below][left] )
+                    n++;
+                if ( alive[below][c] )
+                    n++;
+                if ( alive[below][right] )
+                    n++;
+
+                newBoard[r][c] = rule.nextState( alive[r][c], n );
+                if ( hashing && newBoard[r][c] != alive[r][c] )
+                    hashChange ^= LifeBoard.cellHash( r, c );
+
+            }
+        }
+        hash ^= hashChange;
+        boolean[][] temp = alive;
+        alive = newBoard;
+        newBoard = temp;
+    }
+
+}  // end class ArrayLifeBoard.
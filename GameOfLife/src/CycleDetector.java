@@ -0,0 +1,116 @@
+import java.util.Arrays;
+
+/**
+ * Recognizes a Life board that has settled into a cycle, by remembering the hashes ( from LifeBoard.getHash() ) of
+ * recent generations. If the hash of a new generation matches the hash of a generation p steps earlier, the board is
+ * the same as it was then, and since each generation depends only on the one before it, the board will repeat the
+ * same p generations forever. A board of still lifes has period 1; a board with blinkers has period 2; a glider on a
+ * torus has a period that depends on the size of the board.
+ *
+ * Only the most recent generations are remembered, so cycles that are longer than the history are not found. Hashes
+ * can, in principle, be equal for two different boards, but with 64-bit hashes that is so unlikely that it is ignored.
+ *
+ * To keep the cost of a generation with no match low, a table of counters records how many remembered hashes fall
+ * into each bucket of hash values; the history is searched only when the bucket of the new hash is not empty.
+ */
+public class CycleDetector {
+
+    /**
+     * The number of generations that are remembered if no other number is given.
+     */
+    public static final int DEFAULT_HISTORY = 1024;
+
+    private final long[] hashes;  // The remembered hashes, in a circular buffer.
+    private final long[] generations;  // generations[i] is the generation number for hashes[i].
+    private final int[] bucketCounts;  // bucketCounts[b] is the number of remembered hashes in bucket b.
+    private final int bucketMask;  // The bucket of a hash is hash & bucketMask.
+    private int count;  // Number of remembered hashes.
+    private int next;  // Position in the circular buffer for the next hash.
+
+    private long period;  // Period of the cycle that was found, or 0 if none has been found.
+    private long cycleStart;  // Generation number of the first generation of the cycle that was found.
+
+    public CycleDetector() {
+        this( DEFAULT_HISTORY );
+    }
+
+    /**
+     * Create a detector that remembers the given number of generations, and so can find cycles up to that length.
+     */
+    public CycleDetector( int history ) {
+        if ( history <= 0 )
+            throw new IllegalArgumentException( "The history must have a positive length." );
+        hashes = new long[ history ];
+        generations = new long[ history ];
+        bucketCounts = new int[ Integer.highestOneBit( history ) * 8 ];
+        bucketMask = bucketCounts.length - 1;
+    }
+
+    /**
+     * Record the hash of a generation. Generations should be recorded in order, one after another. Returns the period
+     * of the cycle if the same hash was recorded for an earlier generation that is still remembered, or zero if not.
+     * Once a cycle has been found, getPeriod() and getCycleStart() describe it until reset() is called.
+     */
+    public long check( long hash, long generation ) {
+        int bucket = (int) ( hash ^ ( hash >>> 32 ) ) & bucketMask;
+        if ( bucketCounts[bucket] > 0 ) {
+            for ( int k = 1; k <= count; k++ ) {  // Newest first, so the shortest period is found.
+                int i = ( next - k + hashes.length ) % hashes.length;
+                if ( hashes[i] == hash ) {
+                    period = generation - generations[i];
+                    cycleStart = generations[i];
+                    return period;
+                }
+            }
+        }
+        if ( count == hashes.length ) {
+            long old = hashes[next];
+            bucketCounts[ (int) ( old ^ ( old >>> 32 ) ) & bucketMask ]--;
+        }
+        else {
+            count++;
+        }
+        hashes[next] = hash;
+        generations[next] = generation;
+        bucketCounts[bucket]++;
+        next = ( next + 1 ) % hashes.length;
+        return 0;
+    }
+
+    /**
+     * Return the period of the cycle that was found, or zero if no cycle has been found.
+     */
+    public long getPeriod() {
+        return period;
+    }
+
+    /**
+     * Return the number of the generation at which the cycle that was found first appeared, that is, the earlier of
+     * the two generations whose hashes matched. Meaningless if no cycle has been found.
+     */
+    public long getCycleStart() {
+        return cycleStart;
+    }
+
+    /**
+     * Given that a cycle has been found and the board is at the given generation, return the number of generations
+     * that must actually be computed to get the board of the target generation. This is less than the period, so a
+     * run of any length can be finished quickly.
+     */
+    public long stepsToReach( long generation, long target ) {
+        if ( period == 0 )
+            return target - generation;
+        return ( target - generation ) % period;
+    }
+
+    /**
+     * Forget all remembered generations and any cycle that was found.
+     */
+    public void reset() {
+        Arrays.fill( bucketCounts, 0 );
+        count = 0;
+        next = 0;
+        period = 0;
+    }
+
+}  // end class CycleDetector.
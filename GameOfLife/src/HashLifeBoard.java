@@ -0,0 +1,538 @@
+import java.util.Arrays;
+
+/**
+ * A LifeBoard that uses Bill Gosper's "HashLife" algorithm. The universe is stored as a quadtree: a node at level L
+ * is a square of 2^L by 2^L cells, made of four nodes at level L - 1, and a node at level 0 is a single cell. Nodes
+ * never change once they are created, and every node is "canonical": a hash table makes sure that there is only one
+ * node for any given arrangement of cells, so a pattern that repeats in space, such as a large empty region or a field
+ * of identical still lifes, is only stored once.
+ *
+ * Since nodes never change, the future of a node can be computed once and remembered in the node. A node at level L
+ * determines the central 2^(L-1) by 2^(L-1) square of cells for the next 2^(L-2) generations, no matter what lies
+ * outside it. That result is computed recursively from the results of smaller nodes, and is stored in the node, so a
+ * pattern that repeats in space or in time is only ever computed once. This lets the board advance by 2^k generations
+ * in a single call to advance(k), at a cost that depends on how much new activity the pattern has, not on how many
+ * generations are computed.
+ *
+ * Unlike the other boards, the universe of a HashLifeBoard has no edges: it grows as the pattern grows, and cells that
+ * leave the rows and columns of the board are not lost. The rows and columns only define a window onto the universe,
+ * with row 0 and column 0 at the center of the universe.
+ *
+ * The hash table and the results stored in the nodes can use a lot of memory. The number of nodes is limited by a
+ * cap. When the table reaches the cap, even in the middle of a step, it is rebuilt with only the nodes that are part
+ * of the current pattern or still needed by the step in progress, and all stored results are forgotten. If those
+ * nodes alone fill the cap, the step fails with an IllegalStateException rather than going past it. If they fill more
+ * than half of it, collections come so often that the board does little else; isNearCap() tells when that happens.
+ *
+ * An empty node stays empty, so the board can't follow a rule in which cells with no living neighbors come to life.
+ * Changing the rule forgets all stored results.
+ */
+public class HashLifeBoard implements LifeBoard {
+
+    public static final int DEFAULT_MAX_NODES = 1 << 22;  // The default cap on the number of nodes in the table.
+
+    private static final int MAX_LEVEL = 62;  // Coordinates are longs, so the universe can't be bigger than 2^62.
+
+    private final int rows;  // Number of rows in the window.
+    private final int columns;  // Number of columns in the window.
+    private final int maxNodes;  // When the table holds this many nodes, garbage is collected.
+
+    private Node[] table;  // The hash table of canonical nodes, with collisions chained through Node.next.
+    private int nodeCount;  // Number of nodes in the table.
+    private boolean nearCap;  // True if the last garbage collection kept more than half the cap's worth of nodes.
+    private Node[] inUse = new Node[ 256 ];  // Nodes that the step in progress still needs, which must survive a
+    private int inUseCount;                  // garbage collection.
+    private Node[] emptyNodes = new Node[ MAX_LEVEL + 1 ];  // emptyNodes[L] is the empty node at level L, if created.
+
+    private Node root;  // The whole universe. Its center is at row 0, column 0 of the window.
+    private long generation;  // Number of generations computed since the board was created or cleared.
+    private int stepLog;  // Results stored in nodes are for advancing 2^stepLog generations ( or fewer ).
+
+    private LifeRule rule = LifeRule.CONWAY;  // The rule that gives the next state of each cell.
+
+    private final Node deadCell;  // The two nodes at level 0.
+    private final Node liveCell;
+
+    /**
+     * Create a board that shows the given number of rows and columns of the universe, in which every cell is dead.
+     */
+    public HashLifeBoard( int rows, int columns ) {
+        this( rows, columns, DEFAULT_MAX_NODES );
+    }
+
+    /**
+     * Create a board that shows the given number of rows and columns of the universe, in which every cell is dead.
+     * @param maxNodes the cap on the number of nodes that are kept in the hash table. This must be at least 1000.
+     */
+    public HashLifeBoard( int rows, int columns, int maxNodes ) {
+        if ( rows <= 0 || columns <= 0 )
+            throw new IllegalArgumentException( "Rows and columns must be greater than zero." );
+        if ( maxNodes < 1000 )
+            throw new IllegalArgumentException( "The node cap must be at least 1000." );
+        this.rows = rows;
+        this.columns = columns;
+        this.maxNodes = maxNodes;
+        table = new Node[ 1 << 12 ];
+        deadCell = new Node( 0 );
+        liveCell = new Node( 1 );
+        root = emptyNode( 3 );
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    public int getColumnCount() {
+        return columns;
+    }
+
+    public boolean isAlive( int row, int col ) {
+        Node node = root;
+        long half = 1L << ( node.level - 1 );
+        long x = col + half;  // Coordinates relative to the top left corner of the root.
+        long y = row + half;
+        if ( x < 0 || y < 0 || x >= 2 * half || y >= 2 * half )
+            return false;
+        while ( node.level > 0 && node.population > 0 ) {
+            half = 1L << ( node.level - 1 );
+            if ( y < half )
+                node = x < half ? node.nw : node.ne;
+            else
+                node = x < half ? node.sw : node.se;
+            x &= half - 1;
+            y &= half - 1;
+        }
+        return node == liveCell;
+    }
+
+    public void setAlive( int row, int col, boolean alive ) {
+        while ( ! contains( root, col, row ) )
+            root = expand( root );
+        long half = 1L << ( root.level - 1 );
+        root = setCell( root, col + half, row + half, alive ? liveCell : deadCell );
+    }
+
+    public void clear() {
+        root = emptyNode( 3 );
+        generation = 0;
+    }
+
+    public LifeRule getRule() {
+        return rule;
+    }
+
+    /**
+     * Set the rule, and forget all the results stored in the nodes, which were computed with the old rule.
+     * @throws IllegalArgumentException if cells with no living neighbors come to life under the rule.
+     */
+    public void setRule( LifeRule rule ) {
+        if ( rule.isBirthOnZero() )
+            throw new IllegalArgumentException( "A board without edges can't follow the rule " + rule.getNotation() );
+        if ( ! rule.equals( this.rule ) )
+            forgetResults();
+        this.rule = rule;
+    }
+
+    /**
+     * Advance the universe by one generation.
+     */
+    public void step() {
+        advance( 0 );
+    }
+
+    /**
+     * Advance the universe by 2^k generations in a single step. The results that are stored in the nodes depend on k,
+     * so changing k from one call to the next makes the board recompute them.
+     * @param k the base-2 logarithm of the number of generations. This must be between 0 and 58.
+     * @throws IllegalStateException if the step can't be computed without going over the node cap. The board is
+     *    left as it was before the step.
+     */
+    public void advance( int k ) {
+        if ( k < 0 || k > MAX_LEVEL - 4 )
+            throw new IllegalArgumentException( "Can't advance by 2^" + k + " generations." );
+        if ( k != stepLog ) {
+            stepLog = k;
+            forgetResults();
+        }
+
+        // The result of a node at level L is its center after 2^k generations, as long as k <= L - 2. In that time
+        // the pattern can grow by 2^k cells on each side, so make sure that the pattern lies in the central quarter
+        // of the root, and that the root is big enough for the pattern to stay inside its center.
+        while ( root.level < k + 3 || centeredSubSubnode( root ).population != root.population )
+            root = expand( root );
+        inUseCount = 0;
+        root = nextGeneration( root );
+        generation += 1L << k;
+    }
+
+    /**
+     * Return the number of generations computed since the board was created or cleared.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Return the cap on the number of nodes in the hash table.
+     */
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+
+    /**
+     * Return true if the last garbage collection had to keep more than half of getMaxNodes() nodes. The board is then
+     * slow, since it collects garbage every few steps, and a bigger cap would help.
+     */
+    public boolean isNearCap() {
+        return nearCap;
+    }
+
+    /**
+     * Return the number of living cells in the whole universe, including cells outside the window.
+     */
+    public long getPopulation() {
+        return root.population;
+    }
+
+    /**
+     * Return the hash of all the living cells in the universe, including cells outside the window. Empty nodes are
+     * skipped, so this takes time proportional to the number of living cells times the depth of the tree.
+     */
+    public long getHash() {
+        long half = 1L << ( root.level - 1 );
+        return hash( root, -half, -half );
+    }
+
+    /**
+     * Return the XOR of the hashes of the living cells in a node whose top left corner is at the given row and column.
+     */
+    private static long hash( Node n, long row, long col ) {
+        if ( n.population == 0 )
+            return 0;
+        if ( n.level == 0 )
+            return LifeBoard.cellHash( row, col );
+        long half = 1L << ( n.level - 1 );
+        return hash( n.nw, row, col ) ^ hash( n.ne, row, col + half )
+               ^ hash( n.sw, row + half, col ) ^ hash( n.se, row + half, col + half );
+    }
+
+    /**
+     * Return the number of canonical nodes currently held in the hash table.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    //---------------------------------------------------------------------------------------------------------------
+
+    /**
+     * A square of cells in the quadtree. Nodes are immutable except for the stored result.
+     */
+    private static final class Node {
+
+        final int level;  // The node is a square of 2^level by 2^level cells.
+        final Node nw, ne, sw, se;  // The four quadrants, or null at level 0.
+        final long population;  // Number of living cells in the node.
+        final int hash;  // Hash code computed from the structure of the node.
+
+        Node result;  // The center of this node, 2^resultStep generations later, or null if not computed.
+        int resultStep;  // The value of stepLog when the result was computed.
+        Node next;  // The next node in the same hash table bucket.
+
+        Node( int population ) {  // Create a node at level 0.
+            level = 0;
+            nw = ne = sw = se = null;
+            this.population = population;
+            hash = population;
+        }
+
+        Node( Node nw, Node ne, Node sw, Node se ) {
+            level = nw.level + 1;
+            this.nw = nw;
+            this.ne = ne;
+            this.sw = sw;
+            this.se = se;
+            population = nw.population + ne.population + sw.population + se.population;
+            hash = hash( nw, ne, sw, se );
+        }
+
+        static int hash( Node nw, Node ne, Node sw, Node se ) {
+            int h = nw.hash;
+            h = h * 1000003 + ne.hash;
+            h = h * 1000003 + sw.hash;
+            h = h * 1000003 + se.hash;
+            return h ^ ( h >>> 16 );
+        }
+
+    }  // end nested class Node.
+
+    /**
+     * Return the canonical node with the given four quadrants, creating it if it is not already in the table.
+     */
+    private Node node( Node nw, Node ne, Node sw, Node se ) {
+        int hash = Node.hash( nw, ne, sw, se );
+        int bucket = hash & ( table.length - 1 );
+        for ( Node n = table[bucket]; n != null; n = n.next ) {
+            if ( n.nw == nw && n.ne == ne && n.sw == sw && n.se == se )
+                return n;
+        }
+        Node n = new Node( nw, ne, sw, se );
+        insert( n );
+        return n;
+    }
+
+    /**
+     * Add a node to the hash table, growing the table if it is getting full.
+     */
+    private void insert( Node n ) {
+        if ( nodeCount >= table.length - ( table.length >>> 2 ) ) {
+            Node[] old = table;
+            table = new Node[ old.length * 2 ];
+            for ( Node chain : old ) {
+                while ( chain != null ) {
+                    Node following = chain.next;
+                    int bucket = chain.hash & ( table.length - 1 );
+                    chain.next = table[bucket];
+                    table[bucket] = chain;
+                    chain = following;
+                }
+            }
+        }
+        int bucket = n.hash & ( table.length - 1 );
+        n.next = table[bucket];
+        table[bucket] = n;
+        nodeCount++;
+    }
+
+    /**
+     * Return the node at the given level in which every cell is dead.
+     */
+    private Node emptyNode( int level ) {
+        if ( level == 0 )
+            return deadCell;
+        if ( emptyNodes[level] == null ) {
+            Node quadrant = emptyNode( level - 1 );
+            emptyNodes[level] = node( quadrant, quadrant, quadrant, quadrant );
+        }
+        return emptyNodes[level];
+    }
+
+    /**
+     * Return a node at the next level up with the given node at its center, surrounded by dead cells.
+     */
+    private Node expand( Node n ) {
+        if ( n.level >= MAX_LEVEL )
+            throw new IllegalStateException( "The pattern has grown too large for the universe." );
+        Node border = emptyNode( n.level - 1 );
+        return node( node( border, border, border, n.nw ), node( border, border, n.ne, border ),
+                     node( border, n.sw, border, border ), node( n.se, border, border, border ) );
+    }
+
+    /**
+     * Test whether a cell, given by its window coordinates, lies inside the square covered by a root node.
+     */
+    private static boolean contains( Node root, long x, long y ) {
+        long half = 1L << ( root.level - 1 );
+        return x >= -half && x < half && y >= -half && y < half;
+    }
+
+    /**
+     * Return a node that is the same as n, except that the cell at ( x, y ), measured from the top left corner of n,
+     * is replaced by the given level-0 node.
+     */
+    private Node setCell( Node n, long x, long y, Node cell ) {
+        if ( n.level == 0 )
+            return cell;
+        long half = 1L << ( n.level - 1 );
+        long qx = x & ( half - 1 );
+        long qy = y & ( half - 1 );
+        if ( y < half ) {
+            if ( x < half )
+                return node( setCell( n.nw, qx, qy, cell ), n.ne, n.sw, n.se );
+            else
+                return node( n.nw, setCell( n.ne, qx, qy, cell ), n.sw, n.se );
+        }
+        else {
+            if ( x < half )
+                return node( n.nw, n.ne, setCell( n.sw, qx, qy, cell ), n.se );
+            else
+                return node( n.nw, n.ne, n.sw, setCell( n.se, qx, qy, cell ) );
+        }
+    }
+
+    //---------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Return the center of a node at level L >= 2, advanced by 2^j generations, where j is the smaller of stepLog and
+     * L - 2. The result is a node at level L - 1, and it is remembered in the node.
+     */
+    private Node nextGeneration( Node m ) {
+        if ( m.result != null && m.resultStep == stepLog )
+            return m.result;
+        int mark = inUseCount;
+        use( m );
+        if ( nodeCount >= maxNodes )
+            collectGarbage();
+        Node result;
+        if ( m.population == 0 )
+            result = emptyNode( m.level - 1 );
+        else if ( m.level == 2 )
+            result = oneGeneration( m );
+        else if ( stepLog >= m.level - 2 ) {
+
+            // Full speed: advance nine overlapping subnodes by 2^(L-3) generations, combine them into four nodes,
+            // and advance those by another 2^(L-3) generations.
+            // Each result is marked as in use, since computing the next one can collect garbage.
+            Node n00 = use( nextGeneration( m.nw ) );
+            Node n01 = use( nextGeneration( node( m.nw.ne, m.ne.nw, m.nw.se, m.ne.sw ) ) );
+            Node n02 = use( nextGeneration( m.ne ) );
+            Node n10 = use( nextGeneration( node( m.nw.sw, m.nw.se, m.sw.nw, m.sw.ne ) ) );
+            Node n11 = use( nextGeneration( node( m.nw.se, m.ne.sw, m.sw.ne, m.se.nw ) ) );
+            Node n12 = use( nextGeneration( node( m.ne.sw, m.ne.se, m.se.nw, m.se.ne ) ) );
+            Node n20 = use( nextGeneration( m.sw ) );
+            Node n21 = use( nextGeneration( node( m.sw.ne, m.se.nw, m.sw.se, m.se.sw ) ) );
+            Node n22 = use( nextGeneration( m.se ) );
+            result = combine( n00, n01, n02, n10, n11, n12, n20, n21, n22 );
+        }
+        else {
+
+            // Slower than full speed: take the nine overlapping subnodes without advancing them, so that only the
+            // second half of the recursion moves the pattern forward by 2^stepLog generations.
+            Node n00 = use( centeredSubnode( m.nw ) );
+            Node n01 = use( centeredHorizontal( m.nw, m.ne ) );
+            Node n02 = use( centeredSubnode( m.ne ) );
+            Node n10 = use( centeredVertical( m.nw, m.sw ) );
+            Node n11 = use( centeredSubSubnode( m ) );
+            Node n12 = use( centeredVertical( m.ne, m.se ) );
+            Node n20 = use( centeredSubnode( m.sw ) );
+            Node n21 = use( centeredHorizontal( m.sw, m.se ) );
+            Node n22 = use( centeredSubnode( m.se ) );
+            result = combine( n00, n01, n02, n10, n11, n12, n20, n21, n22 );
+        }
+        m.result = result;
+        m.resultStep = stepLog;
+        inUseCount = mark;
+        return result;
+    }
+
+    /**
+     * Mark a node as needed by the step in progress, until the call of nextGeneration() that marked it returns.
+     */
+    private Node use( Node n ) {
+        if ( inUseCount == inUse.length )
+            inUse = Arrays.copyOf( inUse, 2 * inUseCount );
+        inUse[ inUseCount++ ] = n;
+        return n;
+    }
+
+    /**
+     * Given a 3 by 3 arrangement of nodes at level L - 2, form the four overlapping nodes at level L - 1 and combine
+     * their results into a node at level L - 1.
+     */
+    private Node combine( Node n00, Node n01, Node n02, Node n10, Node n11, Node n12, Node n20, Node n21, Node n22 ) {
+        Node nw = use( nextGeneration( node( n00, n01, n10, n11 ) ) );
+        Node ne = use( nextGeneration( node( n01, n02, n11, n12 ) ) );
+        Node sw = use( nextGeneration( node( n10, n11, n20, n21 ) ) );
+        Node se = nextGeneration( node( n11, n12, n21, n22 ) );
+        return node( nw, ne, sw, se );
+    }
+
+    private Node centeredSubnode( Node n ) {
+        return node( n.nw.se, n.ne.sw, n.sw.ne, n.se.nw );
+    }
+
+    private Node centeredHorizontal( Node w, Node e ) {
+        return node( w.ne.se, e.nw.sw, w.se.ne, e.sw.nw );
+    }
+
+    private Node centeredVertical( Node n, Node s ) {
+        return node( n.sw.se, n.se.sw, s.nw.ne, s.ne.nw );
+    }
+
+    private Node centeredSubSubnode( Node n ) {
+        return node( n.nw.se.se, n.ne.sw.sw, n.sw.ne.ne, n.se.nw.nw );
+    }
+
+    /**
+     * Compute the center 2 by 2 cells of a level-2 node after one generation, by applying the board's rule
+     * directly to each of the four cells.
+     */
+    private Node oneGeneration( Node m ) {
+        int bits = 0;  // The 16 cells of the node, row by row, with the top left cell in bit 15.
+        for ( int y = 0; y < 4; y++ ) {
+            for ( int x = 0; x < 4; x++ ) {
+                Node quadrant = y < 2 ? ( x < 2 ? m.nw : m.ne ) : ( x < 2 ? m.sw : m.se );
+                Node cell = ( y & 1 ) == 0 ? ( ( x & 1 ) == 0 ? quadrant.nw : quadrant.ne )
+                                           : ( ( x & 1 ) == 0 ? quadrant.sw : quadrant.se );
+                bits = ( bits << 1 ) | ( cell == liveCell ? 1 : 0 );
+            }
+        }
+        return node( cellAfter( bits, 1, 1 ), cellAfter( bits, 1, 2 ), cellAfter( bits, 2, 1 ),
+                     cellAfter( bits, 2, 2 ) );
+    }
+
+    /**
+     * Return the next state of the cell at row y, column x in a 4 by 4 block of cells packed into an int.
+     */
+    private Node cellAfter( int bits, int y, int x ) {
+        int n = 0;
+        for ( int dy = -1; dy <= 1; dy++ ) {
+            for ( int dx = -1; dx <= 1; dx++ ) {
+                if ( dx != 0 || dy != 0 )
+                    n += ( bits >>> ( 15 - 4 * ( y + dy ) - ( x + dx ) ) ) & 1;
+            }
+        }
+        boolean alive = ( ( bits >>> ( 15 - 4 * y - x ) ) & 1 ) != 0;
+        return rule.nextState( alive, n ) ? liveCell : deadCell;
+    }
+
+    //---------------------------------------------------------------------------------------------------------------
+
+    /**
+     * Throw away the results stored in all the nodes in the table.
+     */
+    private void forgetResults() {
+        for ( Node chain : table ) {
+            for ( Node n = chain; n != null; n = n.next )
+                n.result = null;
+        }
+    }
+
+    /**
+     * Rebuild the hash table so that it holds only the nodes that make up the current universe and the nodes that are
+     * marked as in use by the step in progress, and forget all the stored results. If the nodes that are kept are more
+     * than half the allowed nodes, collections will come so often that the board does little else, and nearCap is set.
+     * @throws IllegalStateException if the nodes that have to be kept fill the cap by themselves.
+     */
+    private void collectGarbage() {
+        table = new Node[ 1 << 12 ];
+        nodeCount = 0;
+        emptyNodes = new Node[ MAX_LEVEL + 1 ];
+        keep( root );
+        for ( int i = 0; i < inUseCount; i++ )
+            keep( inUse[i] );
+        if ( nodeCount >= maxNodes )
+            throw new IllegalStateException( "The pattern needs more than " + maxNodes + " HashLife nodes." );
+        nearCap = nodeCount > maxNodes / 2;
+    }
+
+    /**
+     * Put a node and everything below it back into the table, clearing stored results.
+     */
+    private void keep( Node n ) {
+        if ( n.level == 0 )
+            return;
+        int bucket = n.hash & ( table.length - 1 );
+        for ( Node other = table[bucket]; other != null; other = other.next ) {
+            if ( other == n )
+                return;  // Already kept, along with everything below it.
+        }
+        keep( n.nw );
+        keep( n.ne );
+        keep( n.sw );
+        keep( n.se );
+        n.result = null;
+        insert( n );
+    }
+
+}  // end class HashLifeBoard.
@@ -27,30 +27,77 @@
  *  turns the board into a "torus" ( the shape of the surface of a doughnut ), which is finite but has no
  *  boundary.
  *
+ *  Other "Life-like" rules, in which the numbers of neighbors that give birth to a cell and that let a cell survive
+ *  are different, can be selected from a ChoiceBox that lists some well-known rules, such as HighLife ( B36/S23 ) and
+ *  Day & Night ( B3678/S34678 ). Any other rule can be given on the command line in B/S notation, as --rule=B36/S125.
+ *
  *  The program's window shows a Life board with some control buttons beneath the board. The user can
  *  create a board configuration by clicking and dragging on the board to create living cells. Clicking
  *  and dragging while holding down the right mouse button will change living cells back to dead. There is
  *  also a button that will set the state of each cell to be a random value. When the program first starts,
  *  the board contains a simple configuration of five living cells. ( the "R pentomino" ) that will give
- *  a long animation before settling down to static patterns and simple repeaters.
+ *  a long animation before settling down to static patterns and simple repeaters. The "Load" button reads a
+ *  pattern from an RLE or Life 1.06 file, using a LifePatternReader, or a board that was saved as a LifeSnapshot
+ *  with the "Save" button. If --checkpoint=FILE is given on the command line, a snapshot is also saved to that file
+ *  every 1000 generations ( or every N generations, with --checkpoint-every=N ) while the game is running.
+ *
+ *  When the "Stop at Cycle" box is checked, a CycleDetector watches the running game, and the game stops by itself
+ *  once the board has settled into still lifes and oscillators that repeat forever. The period of the cycle and the
+ *  generation where it started are shown in the window's title.
+ *
+ *  The last 1000 generations ( or N generations, with --history=N ) are kept in a LifeHistory, which stores only the
+ *  cells that change from one generation to the next. While the game is stopped, the "Back" button goes back one
+ *  generation, and the "Go To" button goes to any generation that is still in the history. Editing the board or
+ *  stepping forward from an earlier generation starts a new future, and the generations after it are forgotten.
+ *
+ *  A LifeMetrics object measures the time taken to compute each generation and to draw each frame, and the number of
+ *  generations and frames per second. When the "Stats" box is checked, these numbers are shown over the top left
+ *  corner of the board. They are also published as the JMX MBean "Life:type=Metrics", and as "life.Metrics" events
+ *  for Java Flight Recorder.
  *
  *  The board in this program is represented by an object of type MosaicCanvas, which is a custom subclass
- *  of Canvas. The program requires MosaicCanvas.java.
+ *  of Canvas. The state of the cells is kept in a LifeBoard, and the user can choose which kind of LifeBoard computes
+ *  the generations. The program requires MosaicCanvas.java, LifeEngine.java, LifeViewport.java and the LifeBoard
+ *  classes.
+ *
+ *  The board can be much bigger than the window; its size can be given on the command line as --size=N. The window
+ *  shows the part of the board that is selected by a LifeViewport. The scroll wheel and the + and - keys zoom in and
+ *  out, and the arrow keys or dragging with the middle mouse button move the view. When the view is zoomed out far
+ *  enough that a cell is smaller than a pixel, each pixel shows a block of cells, in a shade of gray that depends on
+ *  how many of them are alive.
  */
 
 import javafx.application.Application;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.scene.Scene;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.StackPane;
+import javafx.scene.layout.VBox;
 import javafx.geometry.Pos;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
+import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextInputDialog;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.input.MouseButton;
+import javafx.scene.input.ScrollEvent;
 import javafx.scene.paint.Color;
 import javafx.animation.AnimationTimer;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.Optional;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
 public class Life extends Application {
 
     public static void main( String[] args ) {
@@ -58,42 +105,98 @@ public class Life extends Application {
 
     }
 
-    private final int GRID_SIZE = 100;  // Number of square along each size of the board.
+    private final int VIEW_SIZE = 800;  // Width and height of the display, in pixels.
+    private static final int ALIVE_ARGB = 0xFFFFFFFF;  // The color of a square for a living cell, opaque white, in
+                                                       // the form used by MosaicCanvas.setARGB().
+
+    private int gridSize = 100;  // Number of cells along each side of the board.
 
-    private boolean[][] alive;  // Represents the board. alive[r][c] is true if the cell in row r, column c is alive.
+    private LifeBoard board;  // Represents the board. board.isAlive(r,c) is true if the cell in row r, column c is alive.
     private MosaicCanvas lifeBoard;  // Displays the game to the user. White square are alive; black squares are dead.
+    private LifeViewport viewport;  // The part of the board that is shown in lifeBoard, and its scale.
+    private int[] shades;  // shades[n] is the ARGB color of a square in which n of the sampled cells are alive.
+    private boolean viewChanged;  // Set to true when the viewport changes, so every square must be updated.
+    private double dragX, dragY;  // Position of the mouse, while the view is being dragged with the middle button.
 
     private AnimationTimer timer;  // Drives the game when the user presses the "Start" button.
     private Button stopGoButton;  // Button for starting and stopping the running of the game.
     private Button nextButton;  // Button for computing just the next generation.
+    private Button backButton;  // Button for going back to the previous generation.
+    private Button goToButton;  // Button for going to a generation that the user chooses from the history.
     private Button randomButton;  // Button for filling the board randomly with each cell having a 25% chance of being alive.
     private Button clearButton;  // Button for clearing the board, that is setting all the cells to "dead".
+    private Button loadButton;  // Button for replacing the board with a pattern that is read from a file.
+    private Button saveButton;  // Button for saving a snapshot of the board in a file.
     private Button quitButton;  // Button for ending the program.
 
-    private CheckBox fastCheckbox;  // When checked, the animation runs at full speed, with a new frame
-                                    // generated in each call to the AnimationTimer's handle() method. When not checked,
-                                    // there will be at 1/10 second between frames, giving about 6 frames per second.
+    private CheckBox fastCheckbox;  // When checked, the simulation thread computes generations as fast as it can, and
+                                    // the display shows the latest one each time the screen is redrawn. When not
+                                    // checked, there will be 1/10 second between generations.
+
+    private CheckBox cycleCheckbox;  // When checked, the game stops when the board starts to repeat itself. Takes
+                                     // effect the next time the game is started.
+
+    private CheckBox statsCheckbox;  // When checked, the statistics from metrics are shown over the board.
+    private Label statsOverlay;  // Shows the statistics.
+
+    private ChoiceBox<LifeEngine> engineChoice;  // Selects the kind of LifeBoard that computes the generations.
+    private LifeEngine engine;  // The kind of LifeBoard that board is.
+    private ChoiceBox<LifeRule> ruleChoice;  // Selects the rule that the board follows.
 
     private boolean animationIsRunning;  // Set to true when the timer is started, false when it is paused.
 
+    private LifeSimulation simulation;  // While the animation is running, computes generations on a separate thread.
+    private LifeFrame shownFrame;  // The frame that is shown on the display, or null if the display was last updated
+                                   // directly from the board.
+    private long generation;  // Number of generations computed since the program started.
+    private CycleDetector cycleDetector;  // Checks for cycles while the game runs, if cycleCheckbox was checked.
+    private Stage window;  // The window, whose title shows the cycle that stopped the game.
+    private LifeMetrics metrics;  // Measures the speed of computing and drawing.
+    private LifeCheckpointer checkpointer;  // Saves snapshots while the game is running, or null if not requested.
+    private LifeHistory history;  // Recent generations, for going back; null if the history is turned off.
+
     /**
      * Create a life game board, initially empty, and add it and some buttons to the GUI. Set up event handling
-     * for the buttons. The number of cells on each side of the grid is GRID_SIZE.
+     * for the buttons. The number of cells on each side of the grid is gridSize, which can be set on the command line.
      */
     public void start( Stage stage ) {
 
+        window = stage;
+        metrics = new LifeMetrics();
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean( metrics, new ObjectName( "Life:type=Metrics" ) );
+        }
+        catch ( JMException e ) {
+            System.err.println( "Can't register the metrics MBean: " + e );
+        }
+
+        String size = getParameters().getNamed().get( "size" );
+        if ( size != null )
+            gridSize = Integer.parseInt( size );
+        String checkpointFile = getParameters().getNamed().get( "checkpoint" );
+        if ( checkpointFile != null ) {
+            String every = getParameters().getNamed().get( "checkpoint-every" );
+            checkpointer = new LifeCheckpointer( Paths.get( checkpointFile ), every == null ? 1000
+                                                                                           : Long.parseLong( every ) );
+        }
+
+        String historySize = getParameters().getNamed().get( "history" );
+        int generationsKept = historySize == null ? 1000 : Integer.parseInt( historySize );
+        if ( generationsKept > 0 )
+            history = new LifeHistory( generationsKept, Math.min( generationsKept, 100 ) );
+
         /**
-         * Create and configure the board, including setting up mouse event listeners.
+         * Create and configure the board, including setting up mouse event listeners. The number of squares in the
+         * MosaicCanvas is set by updateView(), to match the viewport; the size of the canvas never changes.
          */
-        int cellSize = 800 / GRID_SIZE;
-        lifeBoard = new MosaicCanvas( GRID_SIZE, GRID_SIZE, cellSize, cellSize );
-
-        if ( cellSize < 5 )
-            lifeBoard.setGroutingColor( null );  // Don't show grouting if cells are too small.
+        viewport = new LifeViewport( gridSize, gridSize, VIEW_SIZE, VIEW_SIZE );
+        lifeBoard = new MosaicCanvas( VIEW_SIZE / 8, VIEW_SIZE / 8, 8, 8 );
 
         lifeBoard.setUse3D( false );
+        lifeBoard.setUsePixelBuffer( true );  // Draw squares into a pixel array that is copied to the screen in one step.
         lifeBoard.setOnMousePressed( e -> mousePressed( e ) );
         lifeBoard.setOnMouseDragged( e -> mouseDragged( e ) );
+        lifeBoard.setOnScroll( e -> mouseScrolled( e ) );
         lifeBoard.setStyle("-fx-border-color:darkgray; -fx-border-width:3px");
 
         /* Create the buttons and checkbox. Add action event listeners to the buttons.
@@ -103,62 +206,127 @@ public class Life extends Application {
         quitButton = new Button( "Quit" );
         nextButton = new Button( "One Step" );
         randomButton = new Button( "Random Fill" );
+        loadButton = new Button( "Load" );
+        saveButton = new Button( "Save" );
+        backButton = new Button( "Back" );
+        goToButton = new Button( "Go To" );
+        backButton.setDisable( history == null );
+        goToButton.setDisable( history == null );
 
         stopGoButton.setOnAction( e -> doStopGo() );
         quitButton.setOnAction( e -> System.exit(0) );
         randomButton.setOnAction( e -> doRandom() );
+        loadButton.setOnAction( e -> doLoad( stage ) );
+        saveButton.setOnAction( e -> doSave( stage ) );
 
         nextButton.setOnAction( e -> {
+            recordBoard();  // In case the board was edited since the last generation was recorded.
             doFrame();
+            recordBoard();
             showBoard();
+            updateMetrics();
         });
+        backButton.setOnAction( e -> doBack() );
+        goToButton.setOnAction( e -> doGoTo() );
 
 
         clearButton.setOnAction( e -> {
-            alive = new boolean[ GRID_SIZE ][ GRID_SIZE ];
+            board.clear();
             showBoard();
         } );
 
         fastCheckbox = new CheckBox( "Fast" );
+        fastCheckbox.setOnAction( e -> setSimulationSpeed() );
+
+        cycleCheckbox = new CheckBox( "Stop at Cycle" );
+        cycleCheckbox.setSelected( true );
+
+        statsOverlay = new Label();
+        statsOverlay.setStyle( "-fx-background-color:rgba(0,0,0,0.6); -fx-text-fill:lime; -fx-font-family:monospace;"
+                               + " -fx-padding:6px" );
+        statsOverlay.setMouseTransparent( true );  // Clicks go through to the board.
+        statsOverlay.setVisible( false );
+        statsCheckbox = new CheckBox( "Stats" );
+        statsCheckbox.setOnAction( e -> {
+            statsOverlay.setVisible( statsCheckbox.isSelected() );
+            updateMetrics();
+        } );
+
+        engineChoice = new ChoiceBox<>();
+        engineChoice.getItems().addAll( LifeEngine.values() );
+        engineChoice.setValue( LifeEngine.PACKED );
+        engineChoice.setOnAction( e -> doChangeEngine() );
+
+        ruleChoice = new ChoiceBox<>();
+        ruleChoice.getItems().addAll( LifeRule.PRESETS );
+        ruleChoice.setValue( LifeRule.CONWAY );
+        String rule = getParameters().getNamed().get( "rule" );
+        if ( rule != null )
+            selectRule( LifeRule.parse( rule ) );
+        ruleChoice.setOnAction( e -> doChangeRule() );
 
         /**
-         * Create, but do not start the animation timers. The user has to press "Start" to start it.
+         * Create, but do not start the animation timers. The user has to press "Start" to start it. While the
+         * animation is running, generations are computed by the simulation thread, and the timer just shows the most
+         * recent generation each time the screen is redrawn. Twice a second, the metrics are updated. If the simulation
+         * has stopped by itself because it found a cycle or because computing a generation failed, the timer stops the
+         * game, and reports the failure, if any.
          */
         timer = new AnimationTimer() {
-            final double oneTenthSecond = 1e8;  // 1e8 nanoseconds = 1/10 second.
-            long previousTime;  // Time when a new frame was last generated.
-
             public void handle( long time ) {
-                if ( ( time - previousTime ) > 0.975 * oneTenthSecond || fastCheckbox.isSelected() ) {
-                    doFrame();
-                    showBoard();
-                    previousTime = time;
+                LifeFrame frame = simulation.takeFrame();
+                if ( frame != null )
+                    showFrame( frame );
+                if ( metrics.getNanosSinceUpdate() >= 500_000_000 )
+                    updateMetrics();
+                if ( ! simulation.isRunning() ) {
+                    Throwable failure = simulation.getFailure();
+                    doStopGo();
+                    if ( failure != null )  // showAndWait() is not allowed while an animation is being processed.
+                        new Alert( Alert.AlertType.ERROR, "The game stopped because of an error:\n" + failure )
+                                .show();
                 }
             }
         };
 
-        HBox bottom = new HBox( 20, stopGoButton, fastCheckbox, nextButton, randomButton, clearButton, quitButton );
+        // The controls don't fit across the window in one row, so the ones that run the game go in the first row, and
+        // the ones that change the board in the second.
+        HBox runControls = new HBox( 20, stopGoButton, fastCheckbox, cycleCheckbox, statsCheckbox, nextButton,
+                                     backButton, goToButton, quitButton );
+        runControls.setAlignment( Pos.CENTER );
+        HBox boardControls = new HBox( 20, randomButton, clearButton, loadButton, saveButton, engineChoice,
+                                       ruleChoice );
+        boardControls.setAlignment( Pos.CENTER );
+        VBox bottom = new VBox( 8, runControls, boardControls );
         bottom.setStyle( "-fx-padding:8px; -fx-border-color:darkgray; -fx-border-width:3px 0 0 0" );
-        bottom.setAlignment( Pos.CENTER );
+
+        StackPane boardPane = new StackPane( lifeBoard, statsOverlay );
+        StackPane.setAlignment( statsOverlay, Pos.TOP_LEFT );
 
         BorderPane root = new BorderPane();
-        root.setCenter( lifeBoard );
+        root.setCenter( boardPane );
         root.setTop( bottom );
 
         /**
-         * Create the array that holds the state for every cell on the board. Set some cells to true for the
-         * "R pentomino" initial configuration, and draw the initial board.
+         * Create the board that holds the state for every cell, using the engine that is selected in the engine
+         * ChoiceBox. Set some cells alive for the "R pentomino" initial configuration, and draw the initial board.
          */
-        alive = new boolean[ GRID_SIZE ][ GRID_SIZE ];
-        alive[49][49] = true;
-        alive[50][49] = true;
-        alive[51][49] = true;
-        alive[49][50] = true;
-        alive[50][48] = true;
-        showBoard();
-
-        /* Set up the scene and stage and show the window. */
+        engine = engineChoice.getValue();
+        board = engine.createBoard( gridSize, gridSize );
+        board.setRule( ruleChoice.getValue() );
+        int middle = gridSize / 2;
+        board.setAlive( middle - 1, middle - 1, true );
+        board.setAlive( middle, middle - 1, true );
+        board.setAlive( middle + 1, middle - 1, true );
+        board.setAlive( middle - 1, middle, true );
+        board.setAlive( middle, middle - 2, true );
+        recordBoard();
+        updateView();
+
+        /* Set up the scene and stage and show the window. The keys that move the view are handled by a filter, so
+           that they work no matter which control has the focus. */
         Scene scene = new Scene( root );
+        scene.addEventFilter( KeyEvent.KEY_PRESSED, e -> keyPressed( e ) );
         stage.setScene( scene );
         stage.setResizable( false );
         stage.setTitle( "Conway's Game of Life" );
@@ -167,75 +335,227 @@ public class Life extends Application {
 
     }
 
+    /**
+     * Makes the squares of the display match the viewport, and then shows the board, or the frame that is on the
+     * display if the simulation is running. This is called when the view is first shown and whenever the user moves
+     * or zooms it. When the view is zoomed in, there is one square for each visible cell; when it is zoomed out, there
+     * is one square for each pixel, and the shades of gray for the squares are set up here.
+     */
+    private void updateView() {
+        int rows = viewport.getSquareRowCount();
+        int columns = viewport.getSquareColumnCount();
+        if ( rows != lifeBoard.getRowCount() || columns != lifeBoard.getColumnCount() ) {
+            lifeBoard.setGridSize( rows, columns, false );
+            lifeBoard.setGroutingColor( viewport.getCellSize() < 5 ? null : Color.GRAY );  // Don't show grouting if
+                                                                                            // cells are too small.
+        }
+        int samples = viewport.getSampleCount();
+        shades = new int[ samples + 1 ];  // shades[0] is 0, which shows the background color, black.
+        for ( int n = 1; n <= samples; n++ ) {
+            int gray = (int) Math.round( 255 * Math.sqrt( (double) n / samples ) );  // The square root makes sparse
+                                                                                     // areas visible.
+            shades[n] = 0xFF000000 | gray * 0x010101;  // The same gray level in the red, green and blue bytes.
+        }
+        viewChanged = true;
+        if ( !animationIsRunning )
+            showBoard();
+        else if ( shownFrame != null )
+            showFrame( shownFrame );
+    }
+
     /**
      * Sets the color of every square in the display to show whether the corresponding cell on the Life board is alive
-     * or dead.
+     * or dead. A PackedLifeBoard knows which of its tiles changed in the last generation, and for such a board only the
+     * squares in those tiles are updated, unless the view is zoomed out or has just changed.
      */
     private void showBoard() {
 
+        long startTime = System.nanoTime();
         lifeBoard.setAutopaint( false );  // For efficiency, prevent redrawing of individual squares. Failure to turn off
                                           // auto-paint would SEVERELY slow down the program.
 
-        for ( int r = 0; r < GRID_SIZE; r++ ) {
-            for ( int c = 0; c < GRID_SIZE; c++ ) {
-                if ( alive[r][c] )
-                    lifeBoard.setColor( r, c, Color.WHITE );  // Alive cells are white.
+        if ( board instanceof PackedLifeBoard && viewport.getCellsPerSquare() == 1 && !viewChanged ) {
+            PackedLifeBoard packed = (PackedLifeBoard) board;
+            for ( int tr = 0; tr < packed.getTileRowCount(); tr++ ) {
+                for ( int tc = 0; tc < packed.getTileColumnCount(); tc++ ) {
+                    if ( packed.isTileChanged( tr, tc ) )
+                        showCells( tr * PackedLifeBoard.TILE_HEIGHT, tc * PackedLifeBoard.TILE_WIDTH,
+                                   PackedLifeBoard.TILE_HEIGHT, PackedLifeBoard.TILE_WIDTH );
+                }
+            }
+        }
+        else {
+            showView( board::isAlive );
+        }
+        viewChanged = false;
+        lifeBoard.setAutopaint( true );  // Redraws the squares that changed, and turns on drawing of individual squares.
+        metrics.frameRendered( System.nanoTime() - startTime );
+    }
+
+    /**
+     * Sets the colors of the squares in a rectangle of the board, starting at the given row and column, to show the
+     * state of the corresponding cells. Parts of the rectangle that lie outside the board or outside the view are
+     * ignored. This is only used when the view is not zoomed out, so there is one square for each cell.
+     */
+    private void showCells( int top, int left, int height, int width ) {
+        int viewTop = viewport.getTopRow();
+        int viewLeft = viewport.getLeftColumn();
+        int bottom = Math.min( Math.min( top + height, gridSize ), viewTop + lifeBoard.getRowCount() );
+        int right = Math.min( Math.min( left + width, gridSize ), viewLeft + lifeBoard.getColumnCount() );
+        for ( int r = Math.max( top, viewTop ); r < bottom; r++ ) {
+            for ( int c = Math.max( left, viewLeft ); c < right; c++ ) {
+                if ( board.isAlive( r, c ) )
+                    lifeBoard.setARGB( r - viewTop, c - viewLeft, ALIVE_ARGB );  // Alive cells are white.
 
                 else
-                    lifeBoard.setColor( r, c, null );  // Shows the background color, black.
+                    lifeBoard.setARGB( r - viewTop, c - viewLeft, 0 );  // Shows the background color, black.
 
             }
         }
-        lifeBoard.setAutopaint( true );  // Redraws the whole board, and turns on drawing of individual squares.
     }
 
     /**
-     * Compute the next generation of cells. The "alive" array is modified to reflect the state of each cell in the new
-     * generation. ( Note that this method does not actually draw the new board; it only sets the values in the "alive"
-     * array. The board is redrawn in the showBoard() method. )
+     * Sets the color of every square in the view, from the cells in the given source. The number of squares does not
+     * depend on the size of the board.
      */
-    private void doFrame() { // Compute the new state of the Life board.
+    private void showView( LifeViewport.CellSource cells ) {
+        for ( int r = 0; r < lifeBoard.getRowCount(); r++ ) {
+            for ( int c = 0; c < lifeBoard.getColumnCount(); c++ )
+                lifeBoard.setARGB( r, c, shades[ viewport.countAlive( cells, r, c ) ] );
+        }
+    }
 
-        boolean[][] newBoard = new boolean[ GRID_SIZE ][ GRID_SIZE ];
-
-        for ( int r = 0; r < GRID_SIZE; r++ ) {
-            int above, below;  // rows considered above and below row number r.
-            int left, right;  // columns considered left and right of column c.
-
-            above = r > 0 ? r - 1 : GRID_SIZE - 1;
-            below = r < GRID_SIZE - 1 ? r + 1 : 0;
-
-            for ( int c = 0; c < GRID_SIZE; c++ ) {
-                left = c > 0 ? c - 1 : GRID_SIZE - 1;
-                right = c < GRID_SIZE - 1 ? c + 1 : 0;
-
-                int n = 0;  // number of alive cells in the 8 neighboring cells.
-
-                if ( alive[above][left] )
-                    n++;
-                if ( alive[above][c] )
-                    n++;
-                if ( alive[above][right] )
-                    n++;
-                if ( alive[r][left] )
-                    n++;
-                if ( alive[r][right] )
-                    n++;
-                if ( alive[below][left] )
-                    n++;
-                if ( alive[below][c] )
-                    n++;
-                if ( alive[below][right] )
-                    n++;
-
-                if ( n == 3 || ( alive[r][c] && n == 2 ) )
-                    newBoard[r][c] = true;
-                else
-                    newBoard[r][c] = false;
+    /**
+     * Compute the next generation of cells. The board is modified to reflect the state of each cell in the new
+     * generation. ( Note that this method does not actually draw the new board; it only updates the board. The board
+     * is redrawn in the showBoard() method. )
+     */
+    private void doFrame() { // Compute the new state of the Life board.
+        long startTime = System.nanoTime();
+        board.step();
+        metrics.generationComputed( System.nanoTime() - startTime );
+        generation++;
+    }
 
+    /**
+     * Sets the colors of the squares in the display to show a frame from the simulation thread. If another frame is
+     * already on the display and the view is not zoomed out, only the squares for visible cells that differ between
+     * the two frames are updated; the words of the two frames are compared with XOR, which finds 64 unchanged cells
+     * at a time.
+     */
+    private void showFrame( LifeFrame frame ) {
+        long startTime = System.nanoTime();
+        lifeBoard.setAutopaint( false );
+        if ( shownFrame == null || viewChanged || viewport.getCellsPerSquare() > 1 ) {
+            showView( frame::isAlive );
+        }
+        else {
+            int wordsPerRow = frame.getWordsPerRow();
+            int top = viewport.getTopRow();
+            int left = viewport.getLeftColumn();
+            int bottom = Math.min( top + lifeBoard.getRowCount(), gridSize );
+            int right = Math.min( left + lifeBoard.getColumnCount(), gridSize );
+            for ( int r = top; r < bottom; r++ ) {
+                for ( int w = left / 64; w <= ( right - 1 ) / 64; w++ ) {
+                    int i = r * wordsPerRow + w;
+                    long diff = frame.getWord( i ) ^ shownFrame.getWord( i );
+                    while ( diff != 0 ) {
+                        int c = w * 64 + Long.numberOfTrailingZeros( diff );
+                        if ( c >= left && c < right )
+                            lifeBoard.setARGB( r - top, c - left, frame.isAlive( r, c ) ? ALIVE_ARGB : 0 );
+                        diff &= diff - 1;  // Clear the lowest bit that is set.
+                    }
+                }
             }
         }
-        alive = newBoard;
+        viewChanged = false;
+        lifeBoard.setAutopaint( true );
+        shownFrame = frame;
+        metrics.frameRendered( System.nanoTime() - startTime );
+    }
+
+    /**
+     * Ends a measurement interval of the metrics, and shows the new statistics if the "Stats" box is checked. While
+     * the game is running, the board belongs to the simulation thread, so the population is taken from the frame that
+     * is on the display.
+     */
+    private void updateMetrics() {
+        if ( animationIsRunning ) {
+            LifeFrame frame = shownFrame;
+            metrics.update( frame == null ? generation : frame.getGeneration(),
+                            frame == null ? 0 : frame.getPopulation() );
+        }
+        else {
+            metrics.update( generation, board.getPopulation() );
+        }
+        if ( statsCheckbox.isSelected() )
+            statsOverlay.setText( metrics.toString() );
+    }
+
+    /**
+     * Sets the speed of the simulation thread, if it is running, according to the "Fast" checkbox. When the box is
+     * checked, generations are computed as fast as possible; otherwise, there are 10 generations per second.
+     */
+    private void setSimulationSpeed() {
+        if ( simulation != null )
+            simulation.setGenerationsPerSecond( fastCheckbox.isSelected() ? 0 : 10 );
+    }
+
+    /**
+     * This method is called when the user selects an engine in the engine ChoiceBox. The current board is replaced by
+     * a board of the selected kind that contains the same living cells. ( Note that HashLife and Sparse boards have no
+     * edges, so patterns that reach the edge of the display keep going instead of wrapping around. )
+     */
+    private void doChangeEngine() {
+        if ( engineChoice.getValue() == engine )
+            return;
+        try {
+            LifeBoard old = board;
+            board = engineChoice.getValue().copyBoard( board );
+            engine = engineChoice.getValue();
+            if ( old instanceof ShardedLifeBoard )
+                ( (ShardedLifeBoard) old ).close();  // Let its worker processes exit.
+            else if ( old instanceof ParallelLifeBoard )
+                ( (ParallelLifeBoard) old ).close();  // End its threads, if it has a pool of its own.
+        }
+        catch ( IllegalArgumentException e ) {  // The new kind of board can't follow the current rule.
+            new Alert( Alert.AlertType.ERROR, e.getMessage() ).showAndWait();
+            engineChoice.setValue( engine );
+        }
+        catch ( UncheckedIOException e ) {  // The worker processes of a sharded board could not be started.
+            new Alert( Alert.AlertType.ERROR, e.getMessage() ).showAndWait();
+            engineChoice.setValue( engine );
+        }
+        showBoard();
+    }
+
+    /**
+     * This method is called when the user selects a rule in the rule ChoiceBox. The board follows the new rule from
+     * the next generation on.
+     */
+    private void doChangeRule() {
+        if ( ruleChoice.getValue().equals( board.getRule() ) )
+            return;
+        try {
+            board.setRule( ruleChoice.getValue() );
+        }
+        catch ( IllegalArgumentException e ) {  // Boards without edges can't follow some rules.
+            new Alert( Alert.AlertType.ERROR, e.getMessage() ).showAndWait();
+            selectRule( board.getRule() );
+        }
+    }
+
+    /**
+     * Shows a rule in the rule ChoiceBox, adding it to the choices if it is not one of them. A rule that is equal to
+     * one of the choices is shown under that choice's name.
+     */
+    private void selectRule( LifeRule rule ) {
+        int i = ruleChoice.getItems().indexOf( rule );
+        if ( i < 0 )
+            ruleChoice.getItems().add( rule );
+        else
+            rule = ruleChoice.getItems().get( i );
+        ruleChoice.setValue( rule );
     }
 
     /**
@@ -247,20 +567,55 @@ public class Life extends Application {
 
         if ( animationIsRunning ) {
 
-            // If the game is currently running, stop it.
+            // If the game is currently running, stop it. Once the simulation thread has stopped, the board belongs
+            // to this thread again; show the last generation that was computed.
             timer.stop();
+            simulation.stop();
+            generation = simulation.getGeneration();
+            simulation = null;
+            showFrame( new LifeFrame( board, generation ) );
+            if ( cycleDetector != null && cycleDetector.getPeriod() > 0 ) {
+                long period = cycleDetector.getPeriod();
+                window.setTitle( "Conway's Game of Life - " + ( period == 1 ? "stable" : "period " + period )
+                                 + " since generation " + cycleDetector.getCycleStart() );
+            }
+            updateMetrics();
             clearButton.setDisable( false );
             randomButton.setDisable( false );
+            loadButton.setDisable( false );
+            saveButton.setDisable( false );
+            engineChoice.setDisable( false );
+            ruleChoice.setDisable( false );
+            nextButton.setDisable( false );
+            backButton.setDisable( history == null );
+            goToButton.setDisable( history == null );
             stopGoButton.setText( "Start" );
             animationIsRunning = false;
 
         }
         else {
-            // If the game is not currently running, start it.
+            // If the game is not currently running, start it. The board is handed over to the simulation thread.
+            shownFrame = null;
+            recordBoard();
+            simulation = new LifeSimulation( board, generation );
+            simulation.setCheckpointer( checkpointer );
+            simulation.setHistory( history );
+            cycleDetector = cycleCheckbox.isSelected() ? new CycleDetector() : null;
+            simulation.setCycleDetector( cycleDetector );
+            simulation.setMetrics( metrics );
+            window.setTitle( "Conway's Game of Life" );
+            setSimulationSpeed();
+            simulation.start();
             timer.start();
             clearButton.setDisable( true );
             randomButton.setDisable( true );
+            loadButton.setDisable( true );
+            saveButton.setDisable( true );
+            engineChoice.setDisable( true );
+            ruleChoice.setDisable( true );
             nextButton.setDisable( true );
+            backButton.setDisable( true );
+            goToButton.setDisable( true );
             stopGoButton.setText( "Stop" );
             animationIsRunning = true;
 
@@ -269,48 +624,219 @@ public class Life extends Application {
     }
 
     /**
-     * This method is called when the user clicks the "Random" button. It fills the alive array with random values and
+     * Records the cells that are on the board in the history, as the current generation. If the board was edited
+     * since that generation was recorded, the edited board replaces it, and any later generations are forgotten.
+     */
+    private void recordBoard() {
+        if ( history != null )
+            history.record( board, generation );
+    }
+
+    /**
+     * This method is called when the user clicks the "Back" button. The board goes back to the previous generation,
+     * if it is still in the history.
+     */
+    private void doBack() {
+        recordBoard();  // Keep any edits, so that going forward again comes back to them.
+        if ( history.contains( generation - 1 ) )
+            goToGeneration( generation - 1 );
+    }
+
+    /**
+     * This method is called when the user clicks the "Go To" button. The user enters the number of a generation that
+     * is in the history, and the board is set to that generation.
+     */
+    private void doGoTo() {
+        recordBoard();
+        TextInputDialog dialog = new TextInputDialog( Long.toString( generation ) );
+        dialog.setTitle( "Go To Generation" );
+        dialog.setHeaderText( "Generations " + history.getOldestGeneration() + " to " + history.getNewestGeneration()
+                              + " are in the history." );
+        dialog.setContentText( "Generation:" );
+        Optional<String> answer = dialog.showAndWait();
+        if ( ! answer.isPresent() )
+            return;
+        try {
+            long target = Long.parseLong( answer.get().trim() );
+            if ( ! history.contains( target ) )
+                throw new IllegalArgumentException( "Generation " + target + " is not in the history." );
+            goToGeneration( target );
+        }
+        catch ( IllegalArgumentException e ) {  // Also catches NumberFormatException.
+            new Alert( Alert.AlertType.ERROR, e.getMessage() ).showAndWait();
+        }
+    }
+
+    /**
+     * Puts the cells of a generation from the history on the board, and shows them. The later generations stay in
+     * the history until the board is edited or run from here.
+     */
+    private void goToGeneration( long target ) {
+        history.getFrame( target ).restore( board );
+        generation = target;
+        showBoard();
+        updateMetrics();
+    }
+
+    /**
+     * This method is called when the user clicks the "Random" button. It fills the board with random values and
      * redraws the board.
      */
     private void doRandom() {
-        for ( int r = 0; r < GRID_SIZE; r++ ) {
-            for ( int c = 0; c < GRID_SIZE; c++ )
-                alive[r][c] = ( Math.random() < 0.25 );  // 25% probability that the cell is alive.
+        for ( int r = 0; r < gridSize; r++ ) {
+            for ( int c = 0; c < gridSize; c++ )
+                board.setAlive( r, c, Math.random() < 0.25 );  // 25% probability that the cell is alive.
 
 
         }
         showBoard();
     }
 
+    /**
+     * This method is called when the user clicks the "Load" button. The user selects an RLE or Life 1.06 file, or a
+     * snapshot file, and the board is cleared and replaced by the pattern from that file. A snapshot also restores the
+     * generation number and the rule, and an RLE file sets the rule if its header gives one. Parts of the pattern that
+     * don't fit on the board are left out. If the file can't be read, an error message is shown, and the board keeps
+     * whatever part of the pattern was read before the error.
+     */
+    private void doLoad( Stage stage ) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle( "Load Pattern" );
+        chooser.getExtensionFilters().addAll( new FileChooser.ExtensionFilter( "Life patterns", "*.rle", "*.lif",
+                                                                               "*.life", "*.lifs" ),
+                                              new FileChooser.ExtensionFilter( "All files", "*" ) );
+        File file = chooser.showOpenDialog( stage );
+        if ( file == null )
+            return;
+        board.clear();
+        try {
+            if ( LifeSnapshot.isSnapshot( file.toPath() ) ) {
+                LifeSnapshot snapshot = LifeSnapshot.open( file.toPath() );
+                LifeRule rule = LifeRule.parse( snapshot.getRule() );
+                board.setRule( rule );
+                snapshot.restore( board );
+                generation = snapshot.getGeneration();
+            }
+            else {
+                LifePatternReader.read( file.toPath(), board );
+            }
+        }
+        catch ( IOException | IllegalArgumentException e ) {  // IllegalArgumentException is for a rule that is not
+                                                                  // valid, or that the board can't follow.
+            new Alert( Alert.AlertType.ERROR, "Can't load " + file.getName() + ":\n" + e.getMessage() ).showAndWait();
+        }
+        selectRule( board.getRule() );  // Snapshots and RLE files can set the rule.
+        showBoard();
+    }
+
+    /**
+     * This method is called when the user clicks the "Save" button. The user selects a file, and a LifeSnapshot of
+     * the board is written to it.
+     */
+    private void doSave( Stage stage ) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle( "Save Snapshot" );
+        chooser.getExtensionFilters().add( new FileChooser.ExtensionFilter( "Life snapshots", "*.lifs" ) );
+        File file = chooser.showSaveDialog( stage );
+        if ( file == null )
+            return;
+        try {
+            LifeSnapshot.write( new LifeFrame( board, generation ), board.getRule().getNotation(), file.toPath() );
+        }
+        catch ( IOException e ) {
+            new Alert( Alert.AlertType.ERROR, "Can't save " + file.getName() + ":\n" + e.getMessage() ).showAndWait();
+        }
+    }
+
     /**
      * This method is called when the user presses a mouse button on the canvas. The square containing the mouse
-     * comes to life or, if the right-mouse button is down, dies.
+     * comes to life or, if the right-mouse button is down, dies. When the view is zoomed out, the cell in the top left
+     * corner of the block of cells shown by that pixel is changed. Pressing the middle button starts dragging the
+     * view, which can be done while the animation is running.
      */
     private void mousePressed( MouseEvent e ) {
+        if ( e.getButton() == MouseButton.MIDDLE ) {
+            dragX = e.getX();
+            dragY = e.getY();
+            return;
+        }
         if ( animationIsRunning )
             return;
 
-        int row = lifeBoard.yCoordToRowNumber( e.getY() );
-        int col = lifeBoard.yCoordToRowNumber( e.getX() );
-
-        if ( row >= 0 && row < lifeBoard.getRowCount() && col >= 0 && col < lifeBoard.getColumnCount() ) {
-            if ( e.getButton() == MouseButton.SECONDARY ) {
-                lifeBoard.setColor( row, col, null );
-                alive[row][col] = false;
-            }
-            else {
-                lifeBoard.setColor( row, col, Color.WHITE );
-                alive[row][col] = true;
-
+        int squareRow = lifeBoard.yCoordToRowNumber( e.getY() );
+        int squareCol = lifeBoard.xCoordToColumnNumber( e.getX() );
+
+        if ( squareRow >= 0 && squareRow < lifeBoard.getRowCount() && squareCol >= 0
+                && squareCol < lifeBoard.getColumnCount() ) {
+            int row = viewport.boardRow( squareRow );
+            int col = viewport.boardColumn( squareCol );
+            if ( row < gridSize && col < gridSize ) {
+                board.setAlive( row, col, e.getButton() != MouseButton.SECONDARY );
+                lifeBoard.setARGB( squareRow, squareCol, shades[ viewport.countAlive( board::isAlive, squareRow,
+                                                                                      squareCol ) ] );
             }
         }
     }
 
     /**
      * The square containing the mouse comes to life or, if the right-mouse button is down, dies.
-     * Dragging the mouse into a square has the same effect as clicking in that square.
+     * Dragging the mouse into a square has the same effect as clicking in that square. Dragging with the
+     * middle button moves the view.
      */
     private void mouseDragged( MouseEvent e ) {
-        mousePressed( e );
+        if ( e.isMiddleButtonDown() ) {
+            boolean moved = viewport.pan( e.getX() - dragX, e.getY() - dragY );
+            dragX = e.getX();
+            dragY = e.getY();
+            if ( moved )
+                updateView();
+        }
+        else {
+            mousePressed( e );
+        }
+    }
+
+    /**
+     * Turning the scroll wheel zooms the view in or out, around the point under the mouse.
+     */
+    private void mouseScrolled( ScrollEvent e ) {
+        if ( e.getDeltaY() != 0 && viewport.zoom( e.getDeltaY() > 0 ? 1 : -1, e.getX(), e.getY() ) )
+            updateView();
+    }
+
+    /**
+     * The arrow keys move the view by a quarter of its size, and the + and - keys zoom in and out around the center
+     * of the view.
+     */
+    private void keyPressed( KeyEvent e ) {
+        boolean changed;
+        switch ( e.getCode() ) {
+            case LEFT:
+                changed = viewport.pan( VIEW_SIZE / 4, 0 );
+                break;
+            case RIGHT:
+                changed = viewport.pan( -VIEW_SIZE / 4, 0 );
+                break;
+            case UP:
+                changed = viewport.pan( 0, VIEW_SIZE / 4 );
+                break;
+            case DOWN:
+                changed = viewport.pan( 0, -VIEW_SIZE / 4 );
+                break;
+            case PLUS:
+            case EQUALS:
+            case ADD:
+                changed = viewport.zoom( 1, VIEW_SIZE / 2, VIEW_SIZE / 2 );
+                break;
+            case MINUS:
+            case SUBTRACT:
+                changed = viewport.zoom( -1, VIEW_SIZE / 2, VIEW_SIZE / 2 );
+                break;
+            default:
+                return;
+        }
+        e.consume();
+        if ( changed )
+            updateView();
     }
-}
+}
\ No newline at end of file
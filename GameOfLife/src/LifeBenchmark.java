@@ -0,0 +1,251 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * A benchmark for the step() methods of the LifeBoard classes. For each engine, board size and starting pattern, a few
+ * warmup iterations are run, so that the JIT compiler has compiled the code, and then several measured iterations.
+ * Every iteration starts from a new board holding the same starting pattern and computes the same number of
+ * generations, so every engine does the same work: an engine that skips the parts of the board that don't change is
+ * measured on the same busy early generations of a soup as one that doesn't. The program reports the throughput, in
+ * generations and cell updates per second, and the number of bytes allocated per generation and per second, which is
+ * measured with the same per-thread allocation counter that JMH's "gc" profiler uses, summed over all the threads in
+ * the JVM. The allocation of the SHARDED engine's worker processes can't be measured, so it is reported as n/a. The
+ * DIRECT engine computes each generation one cell at a time from a plain boolean array, as Life originally did, but
+ * without allocating a new array each generation; it is the baseline that other engines are compared to.
+ *
+ * Three kinds of starting pattern are used: random soups at several densities, a single R-pentomino in the middle of
+ * the board, and a board that is covered with blocks, which is a still life, so that nothing ever changes on it.
+ * ( Under rules other than Conway's, blocks are not necessarily still. ) Each combination can be run under several
+ * rules, to compare the kernels that the LifeRule class compiles for other rules with the ones tuned for Conway's.
+ *
+ * Usage:  java LifeBenchmark [options]
+ *
+ *     --engines A,B,...    engines to measure ( default direct,packed )
+ *     --rules A,B,...      rules in B/S notation ( default B3/S23 )
+ *     --sizes A,B,...      board sizes ( default 100,256,1024,4096,16384 )
+ *     --densities A,B,...  densities of the random soups ( default 0.1,0.25,0.5 )
+ *     --warmup N           number of warmup iterations ( default 3 )
+ *     --iterations N       number of measured iterations ( default 5 )
+ *     --generations N      generations in each iteration ( default 100,000,000 cell updates' worth for the size,
+ *                          but at least 10 )
+ *
+ * Boards that don't fit in memory, and engines that can't follow a rule, are reported as skipped. Run with a large
+ * -Xmx to measure the biggest sizes with the direct engine.
+ */
+public class LifeBenchmark {
+
+    private static int warmupIterations = 3;
+    private static int measuredIterations = 5;
+    private static int generationsPerIteration = 0;  // If zero, the number of generations depends on the board size.
+
+    public static void main( String[] args ) {
+        List<LifeEngine> engines = new ArrayList<>();
+        engines.add( LifeEngine.DIRECT );
+        engines.add( LifeEngine.PACKED );
+        int[] sizes = { 100, 256, 1024, 4096, 16384 };
+        double[] densities = { 0.1, 0.25, 0.5 };
+        List<LifeRule> rules = new ArrayList<>();
+        rules.add( LifeRule.CONWAY );
+
+        try {
+            for ( int i = 0; i + 1 < args.length; i += 2 ) {
+                String value = args[i + 1];
+                switch ( args[i] ) {
+                    case "--engines":
+                        engines.clear();
+                        for ( String name : value.split( "," ) )
+                            engines.add( LifeEngine.valueOf( name.trim().toUpperCase( Locale.ROOT ) ) );
+                        break;
+                    case "--rules":
+                        rules.clear();
+                        for ( String rule : value.split( "," ) )
+                            rules.add( LifeRule.parse( rule ) );
+                        break;
+                    case "--sizes":
+                        String[] sizeList = value.split( "," );
+                        sizes = new int[ sizeList.length ];
+                        for ( int j = 0; j < sizes.length; j++ )
+                            sizes[j] = Integer.parseInt( sizeList[j].trim() );
+                        break;
+                    case "--densities":
+                        String[] densityList = value.split( "," );
+                        densities = new double[ densityList.length ];
+                        for ( int j = 0; j < densities.length; j++ )
+                            densities[j] = Double.parseDouble( densityList[j].trim() );
+                        break;
+                    case "--warmup":
+                        warmupIterations = Integer.parseInt( value );
+                        break;
+                    case "--iterations":
+                        measuredIterations = Integer.parseInt( value );
+                        break;
+                    case "--generations":
+                        generationsPerIteration = Integer.parseInt( value );
+                        if ( generationsPerIteration <= 0 )
+                            throw new IllegalArgumentException( "The number of generations must be positive." );
+                        break;
+                    default:
+                        throw new IllegalArgumentException( "Unknown option " + args[i] );
+                }
+            }
+            if ( args.length % 2 != 0 )
+                throw new IllegalArgumentException( "Missing value for " + args[ args.length - 1 ] );
+        }
+        catch ( IllegalArgumentException e ) {
+            System.err.println( e.getMessage() );
+            System.err.println( "Usage: java LifeBenchmark [--engines A,B] [--rules A,B] [--sizes A,B]" );
+            System.err.println( "           [--densities A,B] [--warmup N] [--iterations N] [--generations N]" );
+            System.exit( 1 );
+            return;
+        }
+
+        System.out.printf( "%-10s %-14s %-12s %7s %12s %14s %12s %12s%n",
+                           "engine", "rule", "pattern", "size", "gens/s", "cells/s", "bytes/gen", "MB/s alloc" );
+        for ( int size : sizes ) {
+            for ( LifeEngine engine : engines ) {
+                for ( LifeRule rule : rules ) {
+                    for ( double density : densities )
+                        run( engine, rule, "soup " + density, size, density );
+                    run( engine, rule, "rpentomino", size, 0 );
+                    run( engine, rule, "blocks", size, 0 );
+                }
+            }
+        }
+    }
+
+    /**
+     * Benchmark one engine on one board under one rule, and print a line of results.
+     */
+    private static void run( LifeEngine engine, LifeRule rule, String pattern, int size, double density ) {
+        String notation = rule.getNotation();
+        int generations = generationsPerIteration > 0 ? generationsPerIteration
+                                                      : (int) Math.max( 10, 100_000_000L / ( (long) size * size ) );
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.ThreadMXBean allocation = threads instanceof com.sun.management.ThreadMXBean
+                                                     && engine != LifeEngine.SHARDED
+                                                     ? (com.sun.management.ThreadMXBean) threads : null;
+
+        long nanos = 0;
+        long bytes = 0;
+        for ( int i = 0; i < warmupIterations + measuredIterations; i++ ) {
+            LifeBoard board = null;
+            try {
+                board = engine.createBoard( size, size );
+                board.setRule( rule );
+                fill( board, pattern, density );
+            }
+            catch ( OutOfMemoryError e ) {
+                System.out.printf( "%-10s %-14s %-12s %7d   skipped: not enough memory%n", engine, notation, pattern,
+                                   size );
+                return;
+            }
+            catch ( IllegalArgumentException e ) {
+                if ( board instanceof AutoCloseable )
+                    close( (AutoCloseable) board );
+                System.out.printf( "%-10s %-14s %-12s %7d   skipped: %s%n", engine, notation, pattern, size,
+                                   e.getMessage() );
+                return;
+            }
+            try {
+                long[] ids = allocation == null ? null : threads.getAllThreadIds();
+                long[] before = allocation == null ? null : allocation.getThreadAllocatedBytes( ids );
+                long start = System.nanoTime();
+                for ( int g = 0; g < generations; g++ )
+                    board.step();
+                long time = System.nanoTime() - start;
+                if ( i >= warmupIterations ) {
+                    nanos += time;
+                    if ( allocation != null )
+                        bytes += allocatedSince( allocation, threads, ids, before );
+                }
+            }
+            finally {
+                if ( board instanceof AutoCloseable )
+                    close( (AutoCloseable) board );  // Let a sharded board's workers or a parallel board's threads end.
+            }
+        }
+
+        long total = (long) generations * measuredIterations;
+        double seconds = nanos / 1e9;
+        System.out.printf( "%-10s %-14s %-12s %7d %12.1f %14.4g %12s %12s%n",
+                           engine, notation, pattern, size, total / seconds,
+                           (double) size * size * total / seconds,
+                           allocation == null ? "n/a" : String.format( "%.1f", (double) bytes / total ),
+                           allocation == null ? "n/a" : String.format( "%.2f", bytes / seconds / 1e6 ) );
+    }
+
+    /**
+     * Return the number of bytes allocated by all the threads in the JVM since their counters were read into before.
+     * ids holds the ids of the threads that were alive then. Threads that ended in the meantime are not counted.
+     */
+    private static long allocatedSince( com.sun.management.ThreadMXBean allocation, ThreadMXBean threads, long[] ids,
+                                        long[] before ) {
+        Map<Long,Long> start = new HashMap<>();
+        for ( int i = 0; i < ids.length; i++ )
+            start.put( ids[i], before[i] );
+        long[] now = threads.getAllThreadIds();
+        long[] after = allocation.getThreadAllocatedBytes( now );
+        long bytes = 0;
+        for ( int i = 0; i < now.length; i++ ) {
+            if ( after[i] < 0 )
+                continue;  // The thread has ended.
+            Long earlier = start.get( now[i] );
+            bytes += earlier == null || earlier < 0 ? after[i] : after[i] - earlier;
+        }
+        return bytes;
+    }
+
+    /**
+     * Close a board that holds threads or processes, ignoring any error.
+     */
+    private static void close( AutoCloseable board ) {
+        try {
+            board.close();
+        }
+        catch ( Exception e ) {
+            System.err.println( "Can't close a board: " + e );
+        }
+    }
+
+    /**
+     * Put a starting pattern on a board. The random soups always use the same seed, so every engine gets the same
+     * soup.
+     */
+    private static void fill( LifeBoard board, String pattern, double density ) {
+        int size = board.getRowCount();
+        if ( pattern.equals( "rpentomino" ) ) {
+            int m = size / 2;
+            board.setAlive( m - 1, m, true );
+            board.setAlive( m - 1, m + 1, true );
+            board.setAlive( m, m - 1, true );
+            board.setAlive( m, m, true );
+            board.setAlive( m + 1, m, true );
+        }
+        else if ( pattern.equals( "blocks" ) ) {
+            for ( int r = 0; r + 2 < size; r += 4 ) {
+                for ( int c = 0; c + 2 < size; c += 4 ) {
+                    board.setAlive( r + 1, c + 1, true );
+                    board.setAlive( r + 1, c + 2, true );
+                    board.setAlive( r + 2, c + 1, true );
+                    board.setAlive( r + 2, c + 2, true );
+                }
+            }
+        }
+        else {
+            Random random = new Random( 1234 );
+            for ( int r = 0; r < size; r++ ) {
+                for ( int c = 0; c < size; c++ ) {
+                    if ( random.nextDouble() < density )
+                        board.setAlive( r, c, true );
+                }
+            }
+        }
+    }
+
+}  // end class LifeBenchmark.
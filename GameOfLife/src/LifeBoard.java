@@ -0,0 +1,110 @@
+/**
+ * A LifeBoard holds the state of every cell on a Game of Life board and knows how to compute the next generation.
+ * Rows and columns are numbered starting from zero. Unless an implementation says otherwise, the board is a "torus":
+ * the left edge is next to the right edge and the top edge is next to the bottom edge, just as in the Life program.
+ * Every board follows a LifeRule, which is Conway's rule, B3/S23, until setRule() is called.
+ */
+public interface LifeBoard {
+
+    /**
+     * Return the number of rows of cells on the board.
+     */
+    int getRowCount();
+
+    /**
+     * Return the number of columns of cells on the board.
+     */
+    int getColumnCount();
+
+    /**
+     * Return true if the cell in the specified row and column is alive.
+     */
+    boolean isAlive( int row, int col );
+
+    /**
+     * Make the cell in the specified row and column living or dead.
+     */
+    void setAlive( int row, int col, boolean alive );
+
+    /**
+     * Make length cells alive, starting at the specified row and column and going to the right. This default
+     * implementation calls setAlive() for each cell; boards that can set many cells at once should override it.
+     */
+    default void setAliveRun( int row, int col, int length ) {
+        for ( int i = 0; i < length; i++ )
+            setAlive( row, col + i, true );
+    }
+
+    /**
+     * Replace the board with the next generation of cells. All the cells change simultaneously, following the board's
+     * rule.
+     */
+    void step();
+
+    /**
+     * Return the rule that step() follows.
+     */
+    LifeRule getRule();
+
+    /**
+     * Set the rule that step() follows from now on. The cells on the board are not changed.
+     * @throws IllegalArgumentException if the board can't follow the rule. Boards without edges can't follow rules in
+     *    which dead cells with no living neighbors come to life ( see LifeRule.isBirthOnZero() ).
+     */
+    void setRule( LifeRule rule );
+
+    /**
+     * Set the state of every cell on the board to "dead".
+     */
+    void clear();
+
+    /**
+     * Return the number of living cells on the board. This default implementation counts the cells one at a time;
+     * boards that can do better should override it. Boards without edges count every living cell in the universe,
+     * not just the ones in their rows and columns.
+     */
+    default long getPopulation() {
+        long population = 0;
+        for ( int r = 0; r < getRowCount(); r++ ) {
+            for ( int c = 0; c < getColumnCount(); c++ ) {
+                if ( isAlive( r, c ) )
+                    population++;
+            }
+        }
+        return population;
+    }
+
+    /**
+     * Return a 64-bit hash code of the living cells, which can be used to recognize a board that repeats an earlier
+     * generation. The hash is the XOR of cellHash( row, col ) for every living cell, as in Zobrist hashing, so it does
+     * not depend on the kind of board, and it can be updated when a cell changes by XORing in that cell's hash. This
+     * default implementation computes the hash from scratch by looking at every cell; boards that can keep it up to
+     * date as the cells change should override it.
+     */
+    default long getHash() {
+        long hash = 0;
+        for ( int r = 0; r < getRowCount(); r++ ) {
+            for ( int c = 0; c < getColumnCount(); c++ ) {
+                if ( isAlive( r, c ) )
+                    hash ^= cellHash( r, c );
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Return the pseudo-random 64-bit value that a living cell in the given row and column contributes to getHash().
+     * The row and column are mixed with the finalizer of the MurmurHash3 algorithm, so that cells that are close
+     * together have unrelated values.
+     */
+    static long cellHash( long row, long col ) {
+        long h = row * 0x9E3779B97F4A7C15L + col;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}  // end interface LifeBoard.
@@ -0,0 +1,107 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves a LifeSnapshot of a running board every so many generations, without making the thread that computes the
+ * generations wait for the file to be written. The computing thread calls generationDone() after each generation.
+ * When a checkpoint is due, it only makes a LifeFrame copy of the board, which for a PackedLifeBoard is a single array
+ * copy; the copy is then compressed and written by a separate thread. If that thread is still writing the previous
+ * checkpoint, nothing is copied, and the checkpoint is tried again after the next generation.
+ *
+ * Each checkpoint replaces the previous one in the same file, so the file always holds a complete snapshot of the
+ * most recent checkpoint.
+ */
+public class LifeCheckpointer {
+
+    private final Path file;  // The file that checkpoints are written to.
+    private final long interval;  // Number of generations between checkpoints.
+    private final ExecutorService writer;  // The thread that writes the files.
+
+    private long nextCheckpoint;  // Generation number at which the next checkpoint is due.
+    private volatile boolean writing;  // True while the writer thread is writing a checkpoint.
+    private volatile long lastCheckpoint = -1;  // Generation number of the last checkpoint written, or -1.
+    private volatile IOException error;  // The error from the last checkpoint that failed, or null.
+
+    /**
+     * Create a checkpointer that writes a snapshot to the given file every interval generations, starting from the
+     * first multiple of interval.
+     */
+    public LifeCheckpointer( Path file, long interval ) {
+        if ( interval <= 0 )
+            throw new IllegalArgumentException( "The checkpoint interval must be greater than zero." );
+        this.file = file;
+        this.interval = interval;
+        writer = Executors.newSingleThreadExecutor( r -> {
+            Thread thread = new Thread( r, "Life checkpoint writer" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+    /**
+     * Called by the thread that computes generations, after each generation. If a checkpoint is due, and the
+     * previous one has been written, the board is copied and the copy is handed to the writer thread.
+     */
+    public void generationDone( LifeBoard board, long generation ) {
+        if ( generation < nextCheckpoint || writing )
+            return;
+        if ( nextCheckpoint == 0 && generation % interval != 0 ) {
+            nextCheckpoint = ( generation / interval + 1 ) * interval;  // Line up with multiples of interval.
+            return;
+        }
+        LifeFrame frame = new LifeFrame( board, generation );
+        String rule = board.getRule().getNotation();
+        nextCheckpoint = generation + interval;
+        writing = true;
+        writer.execute( () -> {
+            try {
+                LifeSnapshot.write( frame, rule, file );
+                lastCheckpoint = frame.getGeneration();
+                error = null;
+            }
+            catch ( IOException e ) {
+                error = e;
+            }
+            finally {
+                writing = false;
+            }
+        } );
+    }
+
+    /**
+     * Return the generation number of the last checkpoint that was written successfully, or -1 if there is none.
+     */
+    public long getLastCheckpoint() {
+        return lastCheckpoint;
+    }
+
+    /**
+     * Return the error from the last checkpoint, if it failed, or null if it succeeded.
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    /**
+     * Wait for a checkpoint that is being written, and stop the writer thread.
+     */
+    public void close() {
+        writer.shutdown();
+        boolean interrupted = false;
+        while ( true ) {
+            try {
+                if ( writer.awaitTermination( 1, TimeUnit.MINUTES ) )
+                    break;
+            }
+            catch ( InterruptedException e ) {
+                interrupted = true;
+            }
+        }
+        if ( interrupted )
+            Thread.currentThread().interrupt();
+    }
+
+}  // end class LifeCheckpointer.
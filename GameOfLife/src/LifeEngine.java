@@ -0,0 +1,98 @@
+/**
+ * The different kinds of LifeBoard that can run a game. Each constant knows how to create an empty board of its kind,
+ * and its toString() method returns a name that is suitable for showing to the user.
+ */
+public enum LifeEngine {
+
+    DIRECT( "Direct" ) {  // One boolean per cell, computed one cell at a time.
+        public LifeBoard createBoard( int rows, int columns ) {
+            return new ArrayLifeBoard( rows, columns );
+        }
+    },
+
+    BYTE( "Byte" ) {  // One byte per cell, computed by branch-free loops that the JIT may compile to vector code.
+        public LifeBoard createBoard( int rows, int columns ) {
+            return new ByteLifeBoard( rows, columns );
+        }
+    },
+
+    PACKED( "Packed" ) {  // 64 cells per long, computed 64 cells at a time.
+        public LifeBoard createBoard( int rows, int columns ) {
+            return new PackedLifeBoard( rows, columns );
+        }
+    },
+
+    TABLE( "Table" ) {  // One bit per cell, computed 2 by 2 cells at a time with a lookup table.
+        public LifeBoard createBoard( int rows, int columns ) {
+            return new TableLifeBoard( rows, columns );
+        }
+    },
+
+    PARALLEL( "Parallel" ) {  // Like PACKED, but bands of rows are computed on all available processors.
+        public LifeBoard createBoard( int rows, int columns ) {
+            return new ParallelLifeBoard( rows, columns );
+        }
+    },
+
+    OFFHEAP( "Off-heap" ) {  // Like PACKED, but the cells are kept in direct buffers outside the Java heap.
+        public LifeBoard createBoard( int rows, int columns ) {
+            return new OffHeapLifeBoard( rows, columns );
+        }
+    },
+
+    SHARDED( "Sharded" ) {  // Like PACKED, but bands of rows are computed by separate worker processes.
+        public LifeBoard createBoard( int rows, int columns ) {
+            return new ShardedLifeBoard( rows, columns, Math.min( rows, DEFAULT_SHARDS ) );
+        }
+    },
+
+    HASHLIFE( "HashLife" ) {  // An unbounded universe stored as a quadtree of memoized nodes.
+        public LifeBoard createBoard( int rows, int columns ) {
+            return new HashLifeBoard( rows, columns );
+        }
+    },
+
+    SPARSE( "Sparse" ) {  // An unbounded universe that stores only the living cells.
+        public LifeBoard createBoard( int rows, int columns ) {
+            return new SparseLifeBoard( rows, columns );
+        }
+    };
+
+    /**
+     * The number of worker processes for a SHARDED board, if the board has at least that many rows.
+     */
+    public static final int DEFAULT_SHARDS = 4;
+
+    private final String name;  // The name that is shown to the user.
+
+    LifeEngine( String name ) {
+        this.name = name;
+    }
+
+    /**
+     * Create a board of this kind with the given number of rows and columns, in which every cell is dead.
+     */
+    public abstract LifeBoard createBoard( int rows, int columns );
+
+    /**
+     * Create a board of this kind that has the same size and rule as the given board, and copy the living cells of
+     * that board into it.
+     * @throws IllegalArgumentException if a board of this kind can't follow the rule of the given board.
+     */
+    public LifeBoard copyBoard( LifeBoard board ) {
+        LifeBoard copy = createBoard( board.getRowCount(), board.getColumnCount() );
+        copy.setRule( board.getRule() );
+        for ( int r = 0; r < board.getRowCount(); r++ ) {
+            for ( int c = 0; c < board.getColumnCount(); c++ ) {
+                if ( board.isAlive( r, c ) )
+                    copy.setAlive( r, c, true );
+            }
+        }
+        return copy;
+    }
+
+    public String toString() {
+        return name;
+    }
+
+}  // end enum LifeEngine.
@@ -0,0 +1,126 @@
+import java.util.Arrays;
+
+/**
+ * An immutable copy of the cells of a LifeBoard at one generation. Frames are made by the thread that computes the
+ * generations and handed to the thread that draws them, so they can't share any data with the board. The cells are
+ * packed 64 to a long, in the same layout as a PackedLifeBoard: each row starts with a new word, and bit b of word w
+ * in a row holds the cell in column 64*w + b.
+ */
+public final class LifeFrame {
+
+    private final int rows;  // Number of rows of cells.
+    private final int columns;  // Number of columns of cells.
+    private final int wordsPerRow;  // Number of longs used to hold one row.
+    private final long generation;  // The generation number of this frame.
+    private final long[] cells;  // The cells, row by row.
+
+    /**
+     * Make a frame that holds a copy of the current cells of a board.
+     * @param generation the generation number to record in the frame.
+     */
+    public LifeFrame( LifeBoard board, long generation ) {
+        rows = board.getRowCount();
+        columns = board.getColumnCount();
+        wordsPerRow = ( columns + 63 ) >>> 6;
+        this.generation = generation;
+        cells = new long[ rows * wordsPerRow ];
+        copyCells( board, cells );
+    }
+
+    /**
+     * Make a frame from words in the layout described above. The frame takes over the array, which must not be
+     * changed afterwards.
+     */
+    LifeFrame( int rows, int columns, long generation, long[] cells ) {
+        this.rows = rows;
+        this.columns = columns;
+        wordsPerRow = ( columns + 63 ) >>> 6;
+        this.generation = generation;
+        this.cells = cells;
+    }
+
+    /**
+     * Copy the cells of a board into an array in the layout described above, replacing whatever the array held.
+     * The array must have room for all the rows of the board.
+     */
+    static void copyCells( LifeBoard board, long[] cells ) {
+        int rows = board.getRowCount();
+        int columns = board.getColumnCount();
+        int wordsPerRow = ( columns + 63 ) >>> 6;
+        if ( board instanceof PackedLifeBoard ) {
+            ( (PackedLifeBoard) board ).copyCells( cells );  // Same layout, so the words can be copied directly.
+        }
+        else if ( board instanceof OffHeapLifeBoard ) {
+            ( (OffHeapLifeBoard) board ).copyCells( cells );
+        }
+        else if ( board instanceof ShardedLifeBoard ) {
+            ( (ShardedLifeBoard) board ).copyCells( cells );
+        }
+        else {
+            Arrays.fill( cells, 0, rows * wordsPerRow, 0 );
+            for ( int r = 0; r < rows; r++ ) {
+                for ( int c = 0; c < columns; c++ ) {
+                    if ( board.isAlive( r, c ) )
+                        cells[ r * wordsPerRow + ( c >>> 6 ) ] |= 1L << c;
+                }
+            }
+        }
+    }
+
+    /**
+     * Clear a board and put the living cells of this frame on it. If the board is smaller than the frame, cells that
+     * don't fit are left out.
+     */
+    public void restore( LifeBoard board ) {
+        board.clear();
+        int boardRows = Math.min( rows, board.getRowCount() );
+        for ( int r = 0; r < boardRows; r++ ) {
+            for ( int w = 0; w < wordsPerRow; w++ ) {
+                long word = cells[ r * wordsPerRow + w ];
+                if ( word != 0 )
+                    LifeSnapshot.setRuns( board, r, w * 64, word, board.getColumnCount() );
+            }
+        }
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    public int getColumnCount() {
+        return columns;
+    }
+
+    public int getWordsPerRow() {
+        return wordsPerRow;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Return true if the cell in the specified row and column was alive in this frame.
+     */
+    public boolean isAlive( int row, int col ) {
+        return ( cells[ row * wordsPerRow + ( col >>> 6 ) ] & ( 1L << col ) ) != 0;
+    }
+
+    /**
+     * Return one of the words that hold the cells. Word w of row r is at index r * getWordsPerRow() + w.
+     */
+    public long getWord( int index ) {
+        return cells[index];
+    }
+
+    /**
+     * Return the number of living cells in the frame.
+     */
+    public long getPopulation() {
+        long population = 0;
+        for ( long word : cells )
+            population += Long.bitCount( word );
+        return population;
+    }
+
+}  // end class LifeFrame.
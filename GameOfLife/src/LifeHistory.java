@@ -0,0 +1,325 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A record of the recent generations of a board, so that the game can be rewound to any of them. Only a limited
+ * number of generations is kept; when there are too many, the oldest ones are forgotten.
+ *
+ * The cells of each generation are packed 64 to a long, as in a LifeFrame, but most generations are not stored in
+ * full. Instead, each one is stored as its difference from the generation before it: the XOR of the two, which has
+ * a bit set for each cell that changed. Only the words of the difference that are not zero are kept, along with
+ * their positions, so a generation in which little happens takes little memory, however big the board is. Every
+ * so often a "keyframe" is stored instead, which holds all the words that are not zero in the generation itself. To
+ * rebuild a generation, the nearest keyframe at or before it is copied and the later differences are XORed into it,
+ * so no generation is more than a keyframe interval of differences away from a copy of its cells. When old
+ * generations are forgotten, they are dropped a keyframe interval at a time, so that the oldest generation that is
+ * kept is always a keyframe.
+ *
+ * The history also keeps a full copy of the newest generation, to compute the next difference from, and space for
+ * one more, so the memory it uses is two copies of the board plus the words that changed in the kept generations.
+ *
+ * Copying and comparing the whole board costs time in proportion to its area, every generation. When the board is a
+ * PackedLifeBoard that has computed exactly one step, and has not been edited, since its cells were last recorded,
+ * that is avoided: only the words in the tiles that the board reports as changed are compared with the newest
+ * generation, so recording a generation costs time in proportion to the activity on the board. Keyframes still
+ * scan the whole newest generation, but only once every keyframe interval.
+ *
+ * Generations can be recorded by one thread and read by another; all the methods are synchronized.
+ */
+public class LifeHistory {
+
+    private final int capacity;  // The maximum number of generations to keep.
+    private final int keyframeInterval;  // The maximum number of generations from one keyframe to the next.
+
+    private final List<Entry> entries = new ArrayList<>();  // The generations that are kept, oldest first.
+    private int rows = -1;  // The size of the board whose generations are kept, or -1 if there are none.
+    private int columns = -1;
+    private long[] newest;  // The cells of the newest generation in entries.
+    private long[] scratch;  // Space for copying the cells of the board.
+    private long storedWords;  // The number of words held by all the entries.
+
+    private PackedLifeBoard source;  // If not null, the board whose cells are in newest, when they were recorded.
+    private long sourceSteps;  // The step and edit counts of source when its cells were recorded.
+    private long sourceEdits;
+    private int[] changedIndices = new int[ 64 ];  // Space for collecting the words that changed in one step.
+    private long[] changedWords = new long[ 64 ];
+
+    /**
+     * Create an empty history that keeps up to capacity generations, with a keyframe at least once every
+     * keyframeInterval generations.
+     */
+    public LifeHistory( int capacity, int keyframeInterval ) {
+        if ( keyframeInterval <= 0 || capacity < keyframeInterval )
+            throw new IllegalArgumentException( "The capacity must be at least the keyframe interval, which must be"
+                                                + " greater than zero." );
+        this.capacity = capacity;
+        this.keyframeInterval = keyframeInterval;
+    }
+
+    /**
+     * Record the cells that are on a board as the given generation. Any generations from that one on that are
+     * already in the history are forgotten first, since they might not follow from the cells that are recorded now:
+     * after the game is rewound, or the board is edited, a different future starts. But if the generation is already
+     * in the history with the same cells, nothing changes, so a game that is rewound and then run forward again
+     * without changes keeps its later generations. A board of a different size than the one before replaces the whole
+     * history.
+     */
+    public synchronized void record( LifeBoard board, long generation ) {
+        if ( board.getRowCount() != rows || board.getColumnCount() != columns ) {
+            clear();
+            rows = board.getRowCount();
+            columns = board.getColumnCount();
+            newest = new long[ rows * ( ( columns + 63 ) >>> 6 ) ];
+            scratch = new long[ newest.length ];
+        }
+        Entry entry;
+        if ( board == source && ! entries.isEmpty() && generation == getNewestGeneration() + 1
+                && source.getStepCount() == sourceSteps + 1 && source.getEditCount() == sourceEdits ) {
+            int count = copyChangedTiles( source );  // Brings newest up to date.
+            sourceSteps++;
+            if ( isKeyframeDue() )
+                entry = new Entry( generation, true, newest, null );
+            else
+                entry = new Entry( generation, Arrays.copyOf( changedIndices, count ),
+                                   Arrays.copyOf( changedWords, count ) );
+        }
+        else {
+            source = null;
+            LifeFrame.copyCells( board, scratch );
+            int kept = indexOf( generation );
+            if ( kept >= 0 && Arrays.equals( scratch, kept == entries.size() - 1 ? newest : rebuild( kept ) ) )
+                return;
+            if ( ! entries.isEmpty() && generation <= getNewestGeneration() )
+                discardFrom( generation );
+            if ( isKeyframeDue() )
+                entry = new Entry( generation, true, scratch, null );
+            else
+                entry = new Entry( generation, false, scratch, newest );
+            long[] temp = newest;
+            newest = scratch;
+            scratch = temp;
+            if ( board instanceof PackedLifeBoard ) {
+                source = (PackedLifeBoard) board;
+                sourceSteps = source.getStepCount();
+                sourceEdits = source.getEditCount();
+            }
+        }
+        entries.add( entry );
+        storedWords += entry.words.length;
+
+        if ( entries.size() > capacity ) {
+            int next = 1;  // Find the second keyframe, and drop everything before it.
+            while ( ! entries.get( next ).keyframe )
+                next++;
+            for ( Entry old : entries.subList( 0, next ) )
+                storedWords -= old.words.length;
+            entries.subList( 0, next ).clear();
+        }
+    }
+
+    /**
+     * Forget every generation that is kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        source = null;
+        storedWords = 0;
+        if ( newest != null )
+            Arrays.fill( newest, 0 );
+    }
+
+    /**
+     * Return the number of generations that are kept.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Return the number of the oldest generation that is kept, or -1 if the history is empty.
+     */
+    public synchronized long getOldestGeneration() {
+        return entries.isEmpty() ? -1 : entries.get( 0 ).generation;
+    }
+
+    /**
+     * Return the number of the newest generation that is kept, or -1 if the history is empty.
+     */
+    public synchronized long getNewestGeneration() {
+        return entries.isEmpty() ? -1 : entries.get( entries.size() - 1 ).generation;
+    }
+
+    /**
+     * Return true if the given generation is kept in the history. Usually the generations that are kept are
+     * consecutive, from getOldestGeneration() to getNewestGeneration(), but there is a gap if a generation was
+     * recorded with a number more than one past the newest.
+     */
+    public synchronized boolean contains( long generation ) {
+        return indexOf( generation ) >= 0;
+    }
+
+    /**
+     * Rebuild a generation from the history.
+     * @throws IllegalArgumentException if the generation is not kept.
+     */
+    public synchronized LifeFrame getFrame( long generation ) {
+        int i = indexOf( generation );
+        if ( i < 0 )
+            throw new IllegalArgumentException( "Generation " + generation + " is not in the history." );
+        return new LifeFrame( rows, columns, generation, rebuild( i ) );
+    }
+
+    /**
+     * Return an estimate of the number of bytes used by the history: the two copies of the board, and the words of
+     * the kept generations with their positions.
+     */
+    public synchronized long getMemoryUsage() {
+        long copies = newest == null ? 0 : 16L * newest.length;
+        return copies + 12 * storedWords + 48L * entries.size();
+    }
+
+    /**
+     * Return the cells of entry i, starting from the nearest keyframe at or before it.
+     */
+    private long[] rebuild( int i ) {
+        long[] cells = new long[ newest.length ];
+        int k = i;
+        while ( ! entries.get( k ).keyframe )
+            k--;
+        for ( int j = k; j <= i; j++ ) {
+            Entry entry = entries.get( j );
+            for ( int n = 0; n < entry.words.length; n++ )
+                cells[ entry.indices[n] ] ^= entry.words[n];  // A keyframe is XORed into an empty array.
+        }
+        return cells;
+    }
+
+    /**
+     * Forget the given generation and all later ones, and make "newest" hold the cells of the newest generation that
+     * is left.
+     */
+    private void discardFrom( long generation ) {
+        int first = entries.size();
+        while ( first > 0 && entries.get( first - 1 ).generation >= generation )
+            first--;
+        for ( Entry entry : entries.subList( first, entries.size() ) )
+            storedWords -= entry.words.length;
+        entries.subList( first, entries.size() ).clear();
+        if ( entries.isEmpty() )
+            Arrays.fill( newest, 0 );
+        else
+            System.arraycopy( rebuild( entries.size() - 1 ), 0, newest, 0, newest.length );
+    }
+
+    /**
+     * Return true if the next generation that is recorded should be a keyframe.
+     */
+    private boolean isKeyframeDue() {
+        int sinceKeyframe = 0;
+        for ( int i = entries.size() - 1; i >= 0 && ! entries.get( i ).keyframe; i-- )
+            sinceKeyframe++;
+        return entries.isEmpty() || sinceKeyframe + 1 >= keyframeInterval;
+    }
+
+    /**
+     * Copy into newest the words of the tiles that changed in the board's last step, and put the positions of the
+     * words that are different, and their XOR with the old words, into changedIndices and changedWords. Return the
+     * number of words that are different.
+     */
+    private int copyChangedTiles( PackedLifeBoard board ) {
+        int wordsPerRow = board.getWordsPerRow();
+        int count = 0;
+        for ( int tr = 0; tr < board.getTileRowCount(); tr++ ) {
+            int end = Math.min( rows, ( tr + 1 ) * PackedLifeBoard.TILE_HEIGHT );
+            for ( int w = 0; w < wordsPerRow; w++ ) {
+                if ( ! board.isTileChanged( tr, w ) )
+                    continue;
+                for ( int r = tr * PackedLifeBoard.TILE_HEIGHT; r < end; r++ ) {
+                    int i = r * wordsPerRow + w;
+                    long word = board.getWord( r, w );
+                    if ( word != newest[i] ) {
+                        if ( count == changedIndices.length ) {
+                            changedIndices = Arrays.copyOf( changedIndices, 2 * count );
+                            changedWords = Arrays.copyOf( changedWords, 2 * count );
+                        }
+                        changedIndices[count] = i;
+                        changedWords[count++] = word ^ newest[i];
+                        newest[i] = word;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Return the position of a generation in entries, or -1 if it is not there.
+     */
+    private int indexOf( long generation ) {
+        int low = 0;
+        int high = entries.size() - 1;
+        while ( low <= high ) {
+            int middle = ( low + high ) >>> 1;
+            long g = entries.get( middle ).generation;
+            if ( g < generation )
+                low = middle + 1;
+            else if ( g > generation )
+                high = middle - 1;
+            else
+                return middle;
+        }
+        return -1;
+    }
+
+    //---------------------------------------------------------------------------------------------------------------
+
+    /**
+     * One generation in the history: the words that are not zero, either in the generation itself ( for a keyframe )
+     * or in its XOR with the generation before it, and the positions of those words.
+     */
+    private static final class Entry {
+
+        final long generation;
+        final boolean keyframe;
+        final int[] indices;
+        final long[] words;
+
+        /**
+         * Store the words of cells that are not zero, or that differ from the words of previous, if previous is not
+         * null.
+         */
+        Entry( long generation, boolean keyframe, long[] cells, long[] previous ) {
+            this.generation = generation;
+            this.keyframe = keyframe;
+            int count = 0;
+            for ( int i = 0; i < cells.length; i++ ) {
+                if ( cells[i] != ( previous == null ? 0 : previous[i] ) )
+                    count++;
+            }
+            indices = new int[ count ];
+            words = new long[ count ];
+            int n = 0;
+            for ( int i = 0; i < cells.length; i++ ) {
+                long word = previous == null ? cells[i] : cells[i] ^ previous[i];
+                if ( word != 0 ) {
+                    indices[n] = i;
+                    words[n++] = word;
+                }
+            }
+        }
+
+        /**
+         * Store a difference from the previous generation whose words that are not zero, and their positions, have
+         * already been found.
+         */
+        Entry( long generation, int[] indices, long[] words ) {
+            this.generation = generation;
+            this.keyframe = false;
+            this.indices = indices;
+            this.words = words;
+        }
+
+    }  // end nested class Entry.
+
+}  // end class LifeHistory.
@@ -0,0 +1,108 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how fast the Life program runs: how long it takes to compute a generation and to draw a frame, and how
+ * many of each are done per second. The thread that computes generations calls generationComputed() after each one,
+ * and the thread that draws calls frameRendered() after each frame; those only add to a few counters. Every so often,
+ * the display calls update(), which turns the counts since the previous update into rates and averages. The results
+ * are available from the getter methods, which make up the LifeMetricsMXBean management interface, and each update
+ * also records a LifeMetricsEvent for Java Flight Recorder, if the JVM has it.
+ */
+public class LifeMetrics implements LifeMetricsMXBean {
+
+    private final AtomicLong generations = new AtomicLong();  // Generations computed since the last update.
+    private final AtomicLong computeNanos = new AtomicLong();  // Time spent computing them.
+    private final AtomicLong frames = new AtomicLong();  // Frames drawn since the last update.
+    private final AtomicLong renderNanos = new AtomicLong();  // Time spent drawing them.
+    private long lastUpdate = System.nanoTime();  // Time of the last update.
+
+    // Results of the last update. They are read by JMX threads, so they are volatile.
+    private volatile double generationsPerSecond;
+    private volatile double framesPerSecond;
+    private volatile double computeMillis;
+    private volatile double renderMillis;
+    private volatile long generation;
+    private volatile long population;
+
+    /**
+     * Record that a generation was computed, which took the given number of nanoseconds.
+     */
+    public void generationComputed( long nanos ) {
+        generations.incrementAndGet();
+        computeNanos.addAndGet( nanos );
+    }
+
+    /**
+     * Record that a frame was drawn, which took the given number of nanoseconds.
+     */
+    public void frameRendered( long nanos ) {
+        frames.incrementAndGet();
+        renderNanos.addAndGet( nanos );
+    }
+
+    /**
+     * Return the number of nanoseconds since the last update.
+     */
+    public long getNanosSinceUpdate() {
+        return System.nanoTime() - lastUpdate;
+    }
+
+    /**
+     * End the current measurement interval: compute the rates and averages for the interval, record the generation
+     * and population that are on the display, and commit a LifeMetricsEvent. This should always be called by the same
+     * thread.
+     */
+    public void update( long generation, long population ) {
+        long now = System.nanoTime();
+        double seconds = ( now - lastUpdate ) / 1e9;
+        lastUpdate = now;
+        long g = generations.getAndSet( 0 );
+        long gNanos = computeNanos.getAndSet( 0 );
+        long f = frames.getAndSet( 0 );
+        long fNanos = renderNanos.getAndSet( 0 );
+        generationsPerSecond = seconds > 0 ? g / seconds : 0;
+        framesPerSecond = seconds > 0 ? f / seconds : 0;
+        computeMillis = g > 0 ? gNanos / 1e6 / g : 0;
+        renderMillis = f > 0 ? fNanos / 1e6 / f : 0;
+        this.generation = generation;
+        this.population = population;
+
+        LifeMetricsEvent.commit( generationsPerSecond, framesPerSecond, computeMillis, renderMillis, generation,
+                                 population );
+    }
+
+    public double getGenerationsPerSecond() {
+        return generationsPerSecond;
+    }
+
+    public double getFramesPerSecond() {
+        return framesPerSecond;
+    }
+
+    public double getComputeMillis() {
+        return computeMillis;
+    }
+
+    public double getRenderMillis() {
+        return renderMillis;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public long getPopulation() {
+        return population;
+    }
+
+    /**
+     * Return the results of the last update as a few lines of text, for display in an overlay.
+     */
+    public String toString() {
+        return String.format( "generation %d%npopulation %d%n%.1f generations/s ( %.3f ms each )%n"
+                              + "%.1f frames/s ( %.3f ms each )",
+                              generation, population, generationsPerSecond, computeMillis, framesPerSecond,
+                              renderMillis );
+    }
+
+}  // end class LifeMetrics.
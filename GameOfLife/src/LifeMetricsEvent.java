@@ -0,0 +1,104 @@
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records one measurement interval of LifeMetrics as a Java Flight Recorder event. LifeMetrics commits one of these at
+ * the end of each interval, so a flight recording of the Life program shows the speed of the simulation and the
+ * display over time, next to the garbage collections and other JVM events. When no recording is running, committing
+ * an event costs almost nothing.
+ *
+ * The program is built for Java 8, which may not have Flight Recorder, so this class does not refer to the jdk.jfr
+ * classes directly. The first time it is used, it looks for jdk.jfr.EventFactory, and if that exists, defines the
+ * event type "life.Metrics" with it, through reflection. If it doesn't, commit() does nothing.
+ */
+public final class LifeMetricsEvent {
+
+    private static final String[] FIELD_NAMES = { "generationsPerSecond", "framesPerSecond", "computeMillis",
+                                                  "renderMillis", "generation", "population" };
+    private static final String[] FIELD_LABELS = { "Generations per Second", "Frames per Second",
+                                                   "Compute Time per Generation (ms)", "Render Time per Frame (ms)",
+                                                   "Generation", "Population" };
+    private static final Class<?>[] FIELD_TYPES = { double.class, double.class, double.class, double.class,
+                                                    long.class, long.class };
+
+    private static Object factory;  // The jdk.jfr.EventFactory for the event type, or null if there is no JFR.
+    private static Method newEvent;  // EventFactory.newEvent()
+    private static Method isEnabled;  // Event.isEnabled()
+    private static Method set;  // Event.set( int, Object )
+    private static Method commit;  // Event.commit()
+
+    static {
+        try {
+            Class<?> annotationType = Class.forName( "jdk.jfr.AnnotationElement" );
+            Constructor<?> annotation = annotationType.getConstructor( Class.class, Object.class );
+            Class<?> name = Class.forName( "jdk.jfr.Name" );
+            Class<?> label = Class.forName( "jdk.jfr.Label" );
+            Class<?> category = Class.forName( "jdk.jfr.Category" );
+            Class<?> description = Class.forName( "jdk.jfr.Description" );
+            List<Object> annotations = Arrays.asList(
+                    annotation.newInstance( name, "life.Metrics" ),
+                    annotation.newInstance( label, "Life Metrics" ),
+                    annotation.newInstance( category, new String[] { "Game of Life" } ),
+                    annotation.newInstance( description, "Speed of the Life simulation and display during one "
+                                                         + "measurement interval" ) );
+
+            Constructor<?> field = Class.forName( "jdk.jfr.ValueDescriptor" )
+                                        .getConstructor( Class.class, String.class, List.class );
+            Object[] fields = new Object[ FIELD_NAMES.length ];
+            for ( int i = 0; i < fields.length; i++ ) {
+                fields[i] = field.newInstance( FIELD_TYPES[i], FIELD_NAMES[i],
+                                               Collections.singletonList( annotation.newInstance( label,
+                                                                                                  FIELD_LABELS[i] ) ) );
+            }
+
+            Class<?> factoryType = Class.forName( "jdk.jfr.EventFactory" );
+            Class<?> eventType = Class.forName( "jdk.jfr.Event" );
+            newEvent = factoryType.getMethod( "newEvent" );
+            isEnabled = eventType.getMethod( "isEnabled" );
+            set = eventType.getMethod( "set", int.class, Object.class );
+            commit = eventType.getMethod( "commit" );
+            factory = factoryType.getMethod( "create", List.class, List.class )
+                                 .invoke( null, annotations, Arrays.asList( fields ) );
+        }
+        catch ( ReflectiveOperationException | LinkageError | RuntimeException e ) {
+            factory = null;  // No Flight Recorder in this JVM, so events are not recorded.
+        }
+    }
+
+    private LifeMetricsEvent() {
+    }
+
+    /**
+     * Return true if this JVM has Flight Recorder, so that commit() can record events.
+     */
+    public static boolean isAvailable() {
+        return factory != null;
+    }
+
+    /**
+     * Record the results of one measurement interval, if Flight Recorder is available and a recording that includes
+     * the event is running.
+     */
+    public static void commit( double generationsPerSecond, double framesPerSecond, double computeMillis,
+                               double renderMillis, long generation, long population ) {
+        if ( factory == null )
+            return;
+        try {
+            Object event = newEvent.invoke( factory );
+            if ( (Boolean) isEnabled.invoke( event ) ) {
+                Object[] values = { generationsPerSecond, framesPerSecond, computeMillis, renderMillis, generation,
+                                    population };
+                for ( int i = 0; i < values.length; i++ )
+                    set.invoke( event, i, values[i] );
+                commit.invoke( event );
+            }
+        }
+        catch ( ReflectiveOperationException e ) {
+            factory = null;  // Something is wrong with the event type; stop trying to record it.
+        }
+    }
+
+}  // end class LifeMetricsEvent.
@@ -0,0 +1,38 @@
+/**
+ * The management interface of LifeMetrics. When the Life program is running, these values can be watched with any
+ * JMX client, such as JConsole or VisualVM, under the name "Life:type=Metrics". All of the values describe the last
+ * measurement interval, which is about half a second long while the game is running.
+ */
+public interface LifeMetricsMXBean {
+
+    /**
+     * Return the number of generations that were computed per second.
+     */
+    double getGenerationsPerSecond();
+
+    /**
+     * Return the number of frames that were drawn per second.
+     */
+    double getFramesPerSecond();
+
+    /**
+     * Return the average time, in milliseconds, that it took to compute one generation.
+     */
+    double getComputeMillis();
+
+    /**
+     * Return the average time, in milliseconds, that it took to draw one frame.
+     */
+    double getRenderMillis();
+
+    /**
+     * Return the number of the generation that was on the display at the end of the interval.
+     */
+    long getGeneration();
+
+    /**
+     * Return the number of living cells in the generation that was on the display at the end of the interval.
+     */
+    long getPopulation();
+
+}  // end interface LifeMetricsMXBean.
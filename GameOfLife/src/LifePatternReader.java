@@ -0,0 +1,351 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads Game of Life patterns in the two most common file formats, and puts the living cells on a LifeBoard:
+ *
+ *   - RLE, which starts with a header line such as "x = 3, y = 3, rule = B3/S23", followed by the rows of the pattern,
+ *     run-length encoded: "3o" is three living cells, "2b" is two dead cells, "$" ends a row and "!" ends the pattern.
+ *     The pattern is centered on the board. If the header gives a rule, the board is set to follow it. The part of
+ *     the rule after a colon, such as ":T10,10" for a 10 by 10 torus, describes the shape of the universe, and is
+ *     ignored, since the shape of the board is fixed.
+ *
+ *   - Life 1.06, which starts with the line "#Life 1.06", followed by one line for each living cell, giving its
+ *     x ( column ) and y ( row ) coordinates. Cell ( 0, 0 ) is put in the center of the board.
+ *
+ * In both formats, lines that start with "#" are comments. The file is never read into memory as text: its bytes go
+ * through a small state machine one at a time, and each run of living cells goes straight onto the board with
+ * setAliveRun(). Files of MAP_THRESHOLD bytes or more are read through a memory-mapped buffer instead of a stream.
+ * Cells that fall outside the board are skipped. The board is not cleared first; the pattern is added to whatever is
+ * already there.
+ */
+public class LifePatternReader {
+
+    /**
+     * Files of at least this many bytes are memory-mapped.
+     */
+    public static final long MAP_THRESHOLD = 1 << 20;
+
+    private static final int MAX_MAP_SIZE = 1 << 30;  // Largest part of a file that is mapped at one time.
+    private static final byte[] LIFE_106 = "#Life 1.06".getBytes( StandardCharsets.US_ASCII );
+
+    /**
+     * Read a pattern from a file and add it to the board, and set the board's rule to the rule in the RLE header, if
+     * there is one. Returns the number of living cells that were put on the board.
+     * @throws IOException if the file can't be read or is not a valid RLE or Life 1.06 file, or if the rule in the
+     *    RLE header is not in B/S notation.
+     * @throws IllegalArgumentException if the board can't follow the rule in the RLE header.
+     */
+    public static long read( Path file, LifeBoard board ) throws IOException {
+        long size = Files.size( file );
+        if ( size < MAP_THRESHOLD ) {
+            try ( InputStream in = Files.newInputStream( file ) ) {
+                return read( in, board );
+            }
+        }
+        LifePatternReader reader = new LifePatternReader( board );
+        try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) ) {
+            for ( long position = 0; position < size; position += MAX_MAP_SIZE ) {
+                MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, position,
+                                                       Math.min( MAX_MAP_SIZE, size - position ) );
+                reader.feed( buffer );
+            }
+        }
+        return reader.finish();
+    }
+
+    /**
+     * Read a pattern from a stream and add it to the board, and set the board's rule to the rule in the RLE header, if
+     * there is one. The stream is read in blocks and is not closed. Returns the number of living cells that were put
+     * on the board.
+     * @throws IOException if the stream can't be read or does not contain a valid RLE or Life 1.06 pattern, or if
+     *    the rule in the RLE header is not in B/S notation.
+     * @throws IllegalArgumentException if the board can't follow the rule in the RLE header.
+     */
+    public static long read( InputStream in, LifeBoard board ) throws IOException {
+        LifePatternReader reader = new LifePatternReader( board );
+        byte[] block = new byte[ 1 << 16 ];
+        int count;
+        while ( ( count = in.read( block ) ) >= 0 )
+            reader.feed( ByteBuffer.wrap( block, 0, count ) );
+        return reader.finish();
+    }
+
+    // The states of the parser.
+    private static final int LINE_START = 0;  // At the start of a line, before the RLE header or between Life 1.06 cells.
+    private static final int COMMENT = 1;  // In a line that starts with "#".
+    private static final int HEADER = 2;  // In the RLE header line.
+    private static final int RLE_BODY = 3;  // In the rows of an RLE pattern.
+    private static final int CELL_LINE = 4;  // In a line of a Life 1.06 file that gives a cell.
+    private static final int DONE = 5;  // After the "!" at the end of an RLE pattern.
+
+    private final LifeBoard board;  // The board that the pattern is put on.
+    private final int rows;  // Number of rows on the board.
+    private final int columns;  // Number of columns on the board.
+
+    private int state = LINE_START;
+    private boolean life106;  // Set to true when the "#Life 1.06" line has been seen.
+    private long lineNumber = 1;  // Line that is being read, for error messages.
+    private int commentLength;  // Number of bytes of the current comment line that have been read.
+    private boolean commentMatches;  // True while the comment line matches the start of "#Life 1.06".
+    private final StringBuilder header = new StringBuilder();
+
+    private long originRow;  // Board row and column of row 0, column 0 of the pattern.
+    private long originColumn;
+    private long row;  // Current row and column in the RLE pattern.
+    private long column;
+    private long number;  // The number that is being read: a run count, or a coordinate in a Life 1.06 file.
+    private boolean inNumber;  // True if a digit of number has been read.
+    private boolean negative;  // True if the number started with a minus sign.
+    private int numbersOnLine;  // Number of coordinates read on the current Life 1.06 line.
+    private long x;  // The first coordinate on a Life 1.06 line.
+    private long cellCount;  // Number of living cells put on the board.
+
+    private LifePatternReader( LifeBoard board ) {
+        this.board = board;
+        rows = board.getRowCount();
+        columns = board.getColumnCount();
+    }
+
+    /**
+     * Run the state machine over all the bytes in a buffer. The buffer can end anywhere, even in the middle of a
+     * number; the next buffer simply continues where it left off.
+     */
+    private void feed( ByteBuffer buffer ) throws IOException {
+        while ( buffer.hasRemaining() ) {
+            int ch = buffer.get();
+            switch ( state ) {
+                case LINE_START:
+                    if ( ch == '#' ) {
+                        state = COMMENT;
+                        commentLength = 1;
+                        commentMatches = true;
+                    }
+                    else if ( life106 && ( ch == '-' || ( ch >= '0' && ch <= '9' ) ) ) {
+                        state = CELL_LINE;
+                        cellLineByte( ch );
+                    }
+                    else if ( ! life106 && ch == 'x' ) {
+                        state = HEADER;
+                        header.append( 'x' );
+                    }
+                    else if ( ch == '\n' ) {
+                        lineNumber++;
+                    }
+                    else if ( ch != ' ' && ch != '\t' && ch != '\r' ) {
+                        throw error( ch );
+                    }
+                    break;
+                case COMMENT:
+                    if ( ch == '\n' ) {
+                        if ( commentMatches && commentLength >= LIFE_106.length )
+                            life106 = true;
+                        lineNumber++;
+                        state = LINE_START;
+                    }
+                    else if ( commentLength < LIFE_106.length ) {
+                        commentMatches &= ch == LIFE_106[ commentLength ];
+                        commentLength++;
+                    }
+                    break;
+                case HEADER:
+                    if ( ch == '\n' ) {
+                        startRle();
+                        lineNumber++;
+                        state = RLE_BODY;
+                    }
+                    else if ( header.length() < 1000 ) {
+                        header.append( (char) ( ch & 0xFF ) );
+                    }
+                    else {
+                        throw new IOException( "Line " + lineNumber + ": the header is too long." );
+                    }
+                    break;
+                case RLE_BODY:
+                    rleByte( ch );
+                    break;
+                case CELL_LINE:
+                    cellLineByte( ch );
+                    break;
+                default:  // DONE; anything after the "!" is ignored.
+                    return;
+            }
+        }
+    }
+
+    /**
+     * Check that the end of the input is in a sensible place, and return the number of living cells.
+     */
+    private long finish() throws IOException {
+        if ( state == HEADER ) {
+            startRle();
+            state = RLE_BODY;
+        }
+        else if ( state == CELL_LINE ) {
+            cellLineByte( '\n' );
+        }
+        if ( state == LINE_START && ! life106 && cellCount == 0 )
+            throw new IOException( "This is not an RLE or Life 1.06 file." );
+        return cellCount;
+    }
+
+    /**
+     * Parse the RLE header line, which gives the width and height of the pattern, and use them to center the pattern
+     * on the board. If the header gives a rule, set the board to follow it. The rule is always the last item, and
+     * it can contain commas, as in "rule = B3/S23:T10,10", so it runs to the end of the line.
+     */
+    private void startRle() throws IOException {
+        String text = header.toString();
+        long width = -1;
+        long height = -1;
+        String rule = null;
+        int start = 0;
+        while ( start <= text.length() ) {
+            int comma = text.indexOf( ',', start );
+            if ( comma < 0 )
+                comma = text.length();
+            String item = text.substring( start, comma );
+            int equals = item.indexOf( '=' );
+            if ( equals < 0 )
+                throw new IOException( "Line " + lineNumber + ": bad RLE header \"" + text.trim() + "\"" );
+            String key = item.substring( 0, equals ).trim();
+            if ( key.equals( "rule" ) ) {
+                rule = text.substring( start + equals + 1 ).trim();
+                break;
+            }
+            if ( item.indexOf( '=', equals + 1 ) >= 0 )
+                throw new IOException( "Line " + lineNumber + ": bad RLE header \"" + text.trim() + "\"" );
+            try {
+                if ( key.equals( "x" ) )
+                    width = Long.parseLong( item.substring( equals + 1 ).trim() );
+                else if ( key.equals( "y" ) )
+                    height = Long.parseLong( item.substring( equals + 1 ).trim() );
+            }
+            catch ( NumberFormatException e ) {
+                throw new IOException( "Line " + lineNumber + ": bad size in RLE header \"" + item.trim() + "\"" );
+            }
+            start = comma + 1;
+        }
+        if ( width < 0 || height < 0 )
+            throw new IOException( "Line " + lineNumber + ": the RLE header must give x and y." );
+        if ( rule != null ) {
+            int colon = rule.indexOf( ':' );
+            LifeRule parsed;
+            try {
+                parsed = LifeRule.parse( colon < 0 ? rule : rule.substring( 0, colon ) );
+            }
+            catch ( IllegalArgumentException e ) {
+                throw new IOException( "Line " + lineNumber + ": " + e.getMessage() );
+            }
+            board.setRule( parsed );  // Throws IllegalArgumentException if the board can't follow it.
+        }
+        originRow = ( rows - height ) / 2;
+        originColumn = ( columns - width ) / 2;
+    }
+
+    /**
+     * Handle one byte of the rows of an RLE pattern.
+     */
+    private void rleByte( int ch ) throws IOException {
+        if ( ch >= '0' && ch <= '9' ) {
+            if ( number > Integer.MAX_VALUE )
+                throw new IOException( "Line " + lineNumber + ": run count is too big." );
+            number = number * 10 + ( ch - '0' );
+            inNumber = true;
+            return;
+        }
+        long count = inNumber ? number : 1;
+        number = 0;
+        inNumber = false;
+        if ( ch == 'b' || ch == '.' ) {
+            column += count;
+        }
+        else if ( ch == 'o' || ( ch >= 'A' && ch <= 'Z' ) ) {
+            setRun( originRow + row, originColumn + column, count );
+            column += count;
+        }
+        else if ( ch == '$' ) {
+            row += count;
+            column = 0;
+        }
+        else if ( ch == '!' ) {
+            state = DONE;
+        }
+        else if ( ch == '\n' ) {
+            lineNumber++;
+        }
+        else if ( ch != ' ' && ch != '\t' && ch != '\r' ) {
+            throw error( ch );
+        }
+    }
+
+    /**
+     * Handle one byte of a line of a Life 1.06 file, which should contain two numbers.
+     */
+    private void cellLineByte( int ch ) throws IOException {
+        if ( ch >= '0' && ch <= '9' ) {
+            if ( number > Integer.MAX_VALUE )
+                throw new IOException( "Line " + lineNumber + ": coordinate is too big." );
+            number = number * 10 + ( ch - '0' );
+            inNumber = true;
+        }
+        else if ( ch == '-' && ! inNumber && ! negative ) {
+            negative = true;
+        }
+        else if ( ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n' ) {
+            if ( inNumber ) {
+                long value = negative ? -number : number;
+                if ( numbersOnLine == 0 )
+                    x = value;
+                else if ( numbersOnLine == 1 )
+                    setRun( rows / 2 + value, columns / 2 + x, 1 );
+                else
+                    throw new IOException( "Line " + lineNumber + ": expected two numbers." );
+                numbersOnLine++;
+                number = 0;
+                inNumber = false;
+                negative = false;
+            }
+            else if ( negative ) {
+                throw error( ch );
+            }
+            if ( ch == '\n' ) {
+                if ( numbersOnLine != 2 )
+                    throw new IOException( "Line " + lineNumber + ": expected two numbers." );
+                numbersOnLine = 0;
+                lineNumber++;
+                state = LINE_START;
+            }
+        }
+        else {
+            throw error( ch );
+        }
+    }
+
+    /**
+     * Make a run of cells alive, leaving out the cells that are not on the board.
+     */
+    private void setRun( long boardRow, long boardColumn, long length ) {
+        if ( boardRow < 0 || boardRow >= rows )
+            return;
+        long left = Math.max( boardColumn, 0 );
+        long right = Math.min( boardColumn + length, columns );
+        if ( right > left ) {
+            board.setAliveRun( (int) boardRow, (int) left, (int) ( right - left ) );
+            cellCount += right - left;
+        }
+    }
+
+    private IOException error( int ch ) {
+        String shown = ch >= ' ' && ch < 127 ? "'" + (char) ch + "'" : "byte " + ( ch & 0xFF );
+        return new IOException( "Line " + lineNumber + ": unexpected " + shown + "." );
+    }
+
+}  // end class LifePatternReader.
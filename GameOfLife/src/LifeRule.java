@@ -0,0 +1,256 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A rule for a "Life-like" cellular automaton: like Conway's Game of Life, the next state of a cell depends only on
+ * whether it is alive and on how many of its eight neighbors are alive, but the numbers of neighbors that make a dead
+ * cell come to life ( "birth" ) and that keep a living cell alive ( "survival" ) can be any sets of numbers from 0 to 8.
+ * Rules are written in B/S notation: "B3/S23" is Conway's rule, "B36/S23" is HighLife, and "B2/S" is Seeds, in which
+ * every living cell dies.
+ *
+ * A rule is "compiled" when it is created, into the forms that the LifeBoard classes use in their inner loops, so that
+ * a rule given as a string runs as fast as one that is written into the code:
+ *
+ *   - The birth and survival sets are kept as bit masks, with bit n set if n neighbors are in the set. The next state
+ *     of a single cell is then a shift and a mask, with no loops or comparisons; see nextState().
+ *
+ *   - For boards that pack 64 cells into a long, each of the 18 possible outcomes is turned into a word that is either
+ *     all ones or all zeros. nextWord() adds up the neighbors of 64 cells with bitwise adders, and then uses the bits
+ *     of the sum and the state of each cell to select among those constant words with a tree of bitwise multiplexers.
+ *     That takes more operations than a kernel written for a single rule, but there are no branches at all,
+ *     whatever the rule.
+ *
+ * Rules are immutable, and two rules with the same birth and survival sets are equal, even if they have different
+ * names.
+ */
+public final class LifeRule {
+
+    /**
+     * Conway's Game of Life, B3/S23.
+     */
+    public static final LifeRule CONWAY = new LifeRule( "Conway", 1 << 3, ( 1 << 2 ) | ( 1 << 3 ) );
+
+    /**
+     * Some well-known rules, with their usual names.
+     */
+    public static final List<LifeRule> PRESETS = Collections.unmodifiableList( Arrays.asList(
+        CONWAY,
+        parse( "B36/S23" ).withName( "HighLife" ),
+        parse( "B3678/S34678" ).withName( "Day & Night" ),
+        parse( "B2/S" ).withName( "Seeds" ),
+        parse( "B3/S012345678" ).withName( "Life without Death" ),
+        parse( "B36/S125" ).withName( "2x2" ),
+        parse( "B1357/S1357" ).withName( "Replicator" ),
+        parse( "B368/S245" ).withName( "Morley" ) ) );
+
+    private final String name;  // The name of the rule, or null if it has none.
+    private final int birth;  // Bit n is set if a dead cell with n living neighbors comes to life.
+    private final int survival;  // Bit n is set if a living cell with n living neighbors stays alive.
+
+    // The rule compiled for nextWord(). Each outcome of the rule is a word of all ones or all zeros. For counts 0 to
+    // 7, pairLow[k] is the outcome for count 2*( k % 4 ), for a dead cell if k < 4 and a living cell if not, and
+    // pairDiff[k] is that outcome XOR the outcome for the next count. eightLow and eightDiff are the outcome for a
+    // dead cell with 8 neighbors, and that outcome XOR the one for a living cell.
+    private final long[] pairLow = new long[ 8 ];
+    private final long[] pairDiff = new long[ 8 ];
+    private final long eightLow;
+    private final long eightDiff;
+
+    private LifeRule( String name, int birth, int survival ) {
+        this.name = name;
+        this.birth = birth;
+        this.survival = survival;
+        for ( int k = 0; k < 8; k++ ) {
+            int mask = k < 4 ? birth : survival;
+            int n = 2 * ( k % 4 );
+            pairLow[k] = -( ( mask >>> n ) & 1L );
+            pairDiff[k] = pairLow[k] ^ -( ( mask >>> ( n + 1 ) ) & 1L );
+        }
+        eightLow = -( ( birth >>> 8 ) & 1L );
+        eightDiff = eightLow ^ -( ( survival >>> 8 ) & 1L );
+    }
+
+    /**
+     * Create a rule from its B/S notation, such as "B36/S23". Upper and lower case letters are accepted, the slash can
+     * be left out, and the older S/B notation, with the survival numbers first and no letters, as in "23/36", is also
+     * accepted.
+     * @throws IllegalArgumentException if the string is not a rule in one of those forms.
+     */
+    public static LifeRule parse( String notation ) {
+        String s = notation.trim().toUpperCase( Locale.ROOT );
+        int b = s.indexOf( 'B' );
+        int slash = s.indexOf( '/' );
+        int birth, survival;
+        if ( b == 0 ) {
+            int sPos = s.indexOf( 'S' );
+            if ( sPos < 0 )
+                throw new IllegalArgumentException( "The rule \"" + notation + "\" has no S part." );
+            String births = s.substring( 1, sPos );
+            if ( births.endsWith( "/" ) )
+                births = births.substring( 0, births.length() - 1 );
+            birth = counts( births, notation );
+            survival = counts( s.substring( sPos + 1 ), notation );
+        }
+        else if ( b < 0 && slash >= 0 && ! s.startsWith( "S" ) ) {
+            survival = counts( s.substring( 0, slash ), notation );
+            birth = counts( s.substring( slash + 1 ), notation );
+        }
+        else {
+            throw new IllegalArgumentException( "\"" + notation + "\" is not a rule in B/S notation, such as B3/S23." );
+        }
+        return new LifeRule( null, birth, survival );
+    }
+
+    /**
+     * Return the bit mask for a string of neighbor counts, such as "23".
+     */
+    private static int counts( String digits, String notation ) {
+        int mask = 0;
+        for ( int i = 0; i < digits.length(); i++ ) {
+            char ch = digits.charAt( i );
+            if ( ch < '0' || ch > '8' )
+                throw new IllegalArgumentException( "Unexpected '" + ch + "' in the rule \"" + notation + "\"." );
+            mask |= 1 << ( ch - '0' );
+        }
+        return mask;
+    }
+
+    /**
+     * Return a rule that is the same as this one, but has the given name.
+     */
+    public LifeRule withName( String name ) {
+        return new LifeRule( name, birth, survival );
+    }
+
+    /**
+     * Return the name of the rule, or null if it has none.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Return the rule in B/S notation, such as "B36/S23", with the numbers in increasing order.
+     */
+    public String getNotation() {
+        StringBuilder s = new StringBuilder( "B" );
+        for ( int n = 0; n <= 8; n++ ) {
+            if ( ( birth >>> n & 1 ) != 0 )
+                s.append( n );
+        }
+        s.append( "/S" );
+        for ( int n = 0; n <= 8; n++ ) {
+            if ( ( survival >>> n & 1 ) != 0 )
+                s.append( n );
+        }
+        return s.toString();
+    }
+
+    /**
+     * Return a mask in which bit n is set if a dead cell with n living neighbors comes to life.
+     */
+    public int getBirthMask() {
+        return birth;
+    }
+
+    /**
+     * Return a mask in which bit n is set if a living cell with n living neighbors stays alive.
+     */
+    public int getSurvivalMask() {
+        return survival;
+    }
+
+    /**
+     * Return true if this is Conway's rule, B3/S23. Boards have specially tuned code for that rule.
+     */
+    public boolean isConway() {
+        return birth == CONWAY.birth && survival == CONWAY.survival;
+    }
+
+    /**
+     * Return true if dead cells with no living neighbors come to life under this rule. In an unbounded universe that
+     * would make infinitely many cells come to life, so boards without edges can't follow such a rule.
+     */
+    public boolean isBirthOnZero() {
+        return ( birth & 1 ) != 0;
+    }
+
+    /**
+     * Return the next state of a cell that is alive or dead now and has the given number of living neighbors, from 0
+     * to 8.
+     */
+    public boolean nextState( boolean alive, int neighbors ) {
+        return ( ( ( alive ? survival : birth ) >>> neighbors ) & 1 ) != 0;
+    }
+
+    /**
+     * Apply the rule to 64 cells at once, for boards that pack one cell into each bit of a long. The parameters give,
+     * for each of the 64 cells, the state of its eight neighbors ( nw, n, ne, w, e, sw, s, se ) and of the cell itself
+     * ( c ). The neighbors are added with full adders into the four bits of the count, and the bits of the count and
+     * of the cell then select the outcome of the rule for each of the 64 cells.
+     */
+    public long nextWord( long nw, long n, long ne, long w, long c, long e, long sw, long s, long se ) {
+
+        // Add the three cells above, the two beside, and the three below. Each sum has a "ones" and a "twos" bit.
+        long aboveOnes = nw ^ n ^ ne;
+        long aboveTwos = ( nw & n ) | ( ne & ( nw ^ n ) );
+        long besideOnes = w ^ e;
+        long besideTwos = w & e;
+        long belowOnes = sw ^ s ^ se;
+        long belowTwos = ( sw & s ) | ( se & ( sw ^ s ) );
+
+        // Add the three "ones" bits.
+        long ones = aboveOnes ^ besideOnes ^ belowOnes;
+        long carry = ( aboveOnes & besideOnes ) | ( belowOnes & ( aboveOnes ^ besideOnes ) );
+
+        // Add the three "twos" bits and the carry, counting in units of two. The sum is from 0 to 4.
+        long twosSum = aboveTwos ^ besideTwos ^ belowTwos;
+        long twosCarry = ( aboveTwos & besideTwos ) | ( belowTwos & ( aboveTwos ^ besideTwos ) );
+        long twos = twosSum ^ carry;
+        long fours = twosCarry ^ ( twosSum & carry );
+        long eights = twosCarry & twosSum & carry;  // When this is set, the other three bits are zero.
+
+        // Choose the outcome for each cell with a tree of multiplexers, one level for each bit of the count and one
+        // for the state of the cell. The first level picks between two constant words, so it takes only two
+        // operations: the outcome for an odd count, pairLow ^ pairDiff, or for an even count, pairLow.
+        long m0 = pairLow[0] ^ ( ones & pairDiff[0] );  // Dead cells, counts 0 and 1.
+        long m1 = pairLow[1] ^ ( ones & pairDiff[1] );  // Dead cells, counts 2 and 3.
+        long m2 = pairLow[2] ^ ( ones & pairDiff[2] );
+        long m3 = pairLow[3] ^ ( ones & pairDiff[3] );
+        long m4 = pairLow[4] ^ ( ones & pairDiff[4] );  // Living cells, counts 0 and 1.
+        long m5 = pairLow[5] ^ ( ones & pairDiff[5] );
+        long m6 = pairLow[6] ^ ( ones & pairDiff[6] );
+        long m7 = pairLow[7] ^ ( ones & pairDiff[7] );
+        long t0 = m0 ^ ( twos & ( m0 ^ m1 ) );  // Dead cells, counts 0 to 3.
+        long t1 = m2 ^ ( twos & ( m2 ^ m3 ) );  // Dead cells, counts 4 to 7.
+        long t2 = m4 ^ ( twos & ( m4 ^ m5 ) );
+        long t3 = m6 ^ ( twos & ( m6 ^ m7 ) );
+        long f0 = t0 ^ ( fours & ( t0 ^ t1 ) );  // Dead cells, counts 0 to 7.
+        long f1 = t2 ^ ( fours & ( t2 ^ t3 ) );  // Living cells, counts 0 to 7.
+        long result = f0 ^ ( c & ( f0 ^ f1 ) );
+        long outcome8 = eightLow ^ ( c & eightDiff );  // All cells, count 8.
+        return result ^ ( eights & ( result ^ outcome8 ) );
+    }
+
+    public boolean equals( Object obj ) {
+        if ( ! ( obj instanceof LifeRule ) )
+            return false;
+        LifeRule other = (LifeRule) obj;
+        return birth == other.birth && survival == other.survival;
+    }
+
+    public int hashCode() {
+        return birth * 512 + survival;
+    }
+
+    /**
+     * Return the name of the rule followed by its notation, or just the notation if it has no name. This is suitable
+     * for showing to the user.
+     */
+    public String toString() {
+        return name == null ? getNotation() : name + " " + getNotation();
+    }
+
+}  // end class LifeRule.
@@ -0,0 +1,294 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * A command-line program that runs a Game of Life board without any user interface, and reports how fast it ran.
+ * This makes it possible to run experiments on machines that have no display, and to measure the LifeBoard classes
+ * without the cost of drawing. No JavaFX classes are used.
+ *
+ * Usage:  java LifeRunner [options]
+ *
+ *     --size N          the board has N rows and N columns ( default 100 )
+ *     --rows N          the board has N rows
+ *     --columns N       the board has N columns
+ *     --engine NAME     the kind of board: direct, byte, packed, table, parallel, offheap,
+ *                       sharded, hashlife or sparse ( default packed )
+ *     --board-file FILE for the offheap engine, keep the cells in FILE, mapped into memory, instead of in direct
+ *                       buffers, so that the board can be bigger than memory. The file is replaced.
+ *     --threads N       number of threads for the parallel engine ( default: one per processor )
+ *     --shards N        number of worker processes for the sharded engine ( default 4 )
+ *     --worker-options OPTIONS   options for the java command that starts each worker of the sharded engine,
+ *                       separated by spaces, such as "-Xmx2g -XX:+UseNUMA"
+ *     --rule RULE       the rule, in B/S notation, such as B36/S23 ( default B3/S23, or the rule recorded in a
+ *                       snapshot or RLE file that is loaded with --pattern )
+ *     --seed NAME       the starting pattern: "random" or "rpentomino" ( default random )
+ *     --density D       fraction of living cells for the random seed ( default 0.25 )
+ *     --random-seed N   seed for the random number generator, to make runs repeatable
+ *     --pattern FILE    start from a pattern in an RLE or Life 1.06 file, centered on the board, or from a
+ *                       LifeSnapshot file, instead of a seed
+ *     --generations N   number of generations to compute ( default 1000 )
+ *     --checkpoint FILE write a snapshot of the board to FILE every so often while running, and at the end
+ *     --checkpoint-every N   number of generations between checkpoints ( default 1000 )
+ *     --on-cycle ACTION what to do when the board settles into a cycle: "continue" computing every generation,
+ *                       "stop" the run, or "skip" ahead, computing only the generations needed to finish the run in
+ *                       the same phase of the cycle ( default continue, which does not look for cycles at all )
+ *
+ * With the hashlife engine, unless --checkpoint is given or --on-cycle is "stop" or "skip", the generations are not
+ * computed one at a time. Instead, their number is split into powers of two, and the board advances by each of them
+ * in a single HashLifeBoard.advance() call, biggest first, so that millions of generations take only a few steps.
+ *
+ * When the run is finished, the program prints the number of generations per second, the number of cell updates per
+ * second ( generations times the number of cells on the board ), and the final population. For the hashlife engine,
+ * it also prints the number of nodes in the hash table, and says so if the node cap was nearly too small.
+ */
+public class LifeRunner {
+
+    public static void main( String[] args ) {
+        int rows = 100;
+        int columns = 100;
+        LifeEngine engine = LifeEngine.PACKED;
+        int threads = 0;
+        String seed = "random";
+        double density = 0.25;
+        Long randomSeed = null;
+        long generations = 1000;
+        String pattern = null;
+        String checkpointFile = null;
+        long checkpointInterval = 1000;
+        String onCycle = "continue";
+        LifeRule rule = null;
+        String boardFile = null;
+        int shards = LifeEngine.DEFAULT_SHARDS;
+        List<String> workerOptions = Collections.emptyList();
+
+        try {
+            for ( int i = 0; i < args.length; i++ ) {
+                String option = args[i];
+                if ( i + 1 >= args.length )
+                    throw new IllegalArgumentException( "Missing value for " + option );
+                String value = args[++i];
+                switch ( option ) {
+                    case "--size":
+                        rows = columns = Integer.parseInt( value );
+                        break;
+                    case "--rows":
+                        rows = Integer.parseInt( value );
+                        break;
+                    case "--columns":
+                        columns = Integer.parseInt( value );
+                        break;
+                    case "--engine":
+                        engine = LifeEngine.valueOf( value.toUpperCase( Locale.ROOT ) );
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt( value );
+                        break;
+                    case "--shards":
+                        shards = Integer.parseInt( value );
+                        break;
+                    case "--worker-options":
+                        workerOptions = Arrays.asList( value.trim().split( "\\s+" ) );
+                        break;
+                    case "--board-file":
+                        boardFile = value;
+                        break;
+                    case "--rule":
+                        rule = LifeRule.parse( value );
+                        break;
+                    case "--seed":
+                        seed = value;
+                        break;
+                    case "--density":
+                        density = Double.parseDouble( value );
+                        break;
+                    case "--random-seed":
+                        randomSeed = Long.parseLong( value );
+                        break;
+                    case "--pattern":
+                        pattern = value;
+                        break;
+                    case "--checkpoint":
+                        checkpointFile = value;
+                        break;
+                    case "--checkpoint-every":
+                        checkpointInterval = Long.parseLong( value );
+                        break;
+                    case "--on-cycle":
+                        onCycle = value;
+                        if ( ! onCycle.equals( "continue" ) && ! onCycle.equals( "stop" ) && ! onCycle.equals( "skip" ) )
+                            throw new IllegalArgumentException( "Unknown cycle action " + value );
+                        break;
+                    case "--generations":
+                        generations = Long.parseLong( value );
+                        break;
+                    default:
+                        throw new IllegalArgumentException( "Unknown option " + option );
+                }
+            }
+            if ( checkpointInterval <= 0 )
+                throw new IllegalArgumentException( "The checkpoint interval must be greater than zero." );
+            if ( rows <= 0 || columns <= 0 || generations < 0 )
+                throw new IllegalArgumentException( "The size and number of generations can't be negative." );
+        }
+        catch ( IllegalArgumentException e ) {  // Also catches NumberFormatException.
+            System.err.println( e.getMessage() );
+            System.err.println( "Usage: java LifeRunner [--size N] [--rows N] [--columns N] [--engine NAME]" );
+            System.err.println( "           [--threads N] [--board-file FILE] [--rule RULE]" );
+            System.err.println( "           [--shards N] [--worker-options OPTIONS]" );
+            System.err.println( "           [--seed random|rpentomino] [--density D]" );
+            System.err.println( "           [--random-seed N] [--pattern FILE] [--generations N]" );
+            System.err.println( "           [--checkpoint FILE] [--checkpoint-every N] [--on-cycle continue|stop|skip]" );
+            System.exit( 1 );
+            return;
+        }
+
+        long firstGeneration = 0;  // Generation number of the starting pattern; not zero for a snapshot.
+        LifeBoard board;
+        if ( engine == LifeEngine.PARALLEL && threads > 0 )
+            board = new ParallelLifeBoard( rows, columns, threads );
+        else if ( engine == LifeEngine.OFFHEAP && boardFile != null )
+            board = new OffHeapLifeBoard( rows, columns, Paths.get( boardFile ) );
+        else if ( engine == LifeEngine.SHARDED )
+            board = new ShardedLifeBoard( rows, columns, shards, workerOptions );
+        else
+            board = engine.createBoard( rows, columns );
+        try {
+            if ( rule != null )
+                board.setRule( rule );
+        }
+        catch ( IllegalArgumentException e ) {
+            System.err.println( e.getMessage() );
+            System.exit( 1 );
+        }
+
+        if ( pattern != null ) {
+            try {
+                long startTime = System.nanoTime();
+                long cells;
+                if ( LifeSnapshot.isSnapshot( Paths.get( pattern ) ) ) {
+                    LifeSnapshot snapshot = LifeSnapshot.open( Paths.get( pattern ) );
+                    if ( rule == null )
+                        board.setRule( LifeRule.parse( snapshot.getRule() ) );
+                    cells = snapshot.restore( board );
+                    firstGeneration = snapshot.getGeneration();
+                }
+                else {
+                    cells = LifePatternReader.read( Paths.get( pattern ), board );
+                    if ( rule != null )
+                        board.setRule( rule );  // --rule overrides the rule in the RLE header.
+                }
+                System.out.printf( "loaded %d cells from %s in %.1f ms%n", cells, pattern,
+                                   ( System.nanoTime() - startTime ) / 1e6 );
+            }
+            catch ( IOException | IllegalArgumentException e ) {
+                System.err.println( "Can't load " + pattern + ": " + e.getMessage() );
+                System.exit( 1 );
+            }
+            seed = pattern;
+        }
+        else if ( seed.equals( "rpentomino" ) ) {
+            int r = rows / 2;
+            int c = columns / 2;
+            board.setAlive( r - 1, c, true );
+            board.setAlive( r - 1, c + 1, true );
+            board.setAlive( r, c - 1, true );
+            board.setAlive( r, c, true );
+            board.setAlive( r + 1, c, true );
+        }
+        else if ( seed.equals( "random" ) ) {
+            Random random = randomSeed == null ? new Random() : new Random( randomSeed );
+            for ( int r = 0; r < rows; r++ ) {
+                for ( int c = 0; c < columns; c++ ) {
+                    if ( random.nextDouble() < density )
+                        board.setAlive( r, c, true );
+                }
+            }
+        }
+        else {
+            System.err.println( "Unknown seed " + seed );
+            System.exit( 1 );
+        }
+
+        System.out.printf( "%s board, %d x %d, rule %s, seed %s, initial population %d%n",
+                           engine, rows, columns, board.getRule().getNotation(), seed, board.getPopulation() );
+
+        LifeCheckpointer checkpointer = null;
+        if ( checkpointFile != null )
+            checkpointer = new LifeCheckpointer( Paths.get( checkpointFile ), checkpointInterval );
+
+        CycleDetector detector = onCycle.equals( "continue" ) ? null : new CycleDetector();
+
+        long startTime = System.nanoTime();
+        long computed = 0;  // Number of generations actually computed.
+        if ( board instanceof HashLifeBoard && checkpointer == null && detector == null ) {
+            HashLifeBoard hashLife = (HashLifeBoard) board;
+            int jumps = 0;
+            for ( int k = 58; k >= 0; k-- ) {  // 2^58 generations is the biggest step that advance() can take.
+                while ( generations - computed >= 1L << k ) {
+                    hashLife.advance( k );
+                    computed += 1L << k;
+                    jumps++;
+                }
+            }
+            System.out.printf( "advanced %d generations in %d HashLife steps%n", computed, jumps );
+        }
+        for ( long g = computed + 1; g <= generations; g++ ) {
+            board.step();
+            computed++;
+            if ( checkpointer != null )
+                checkpointer.generationDone( board, firstGeneration + g );
+            if ( detector != null && detector.check( board.getHash(), firstGeneration + g ) > 0 ) {
+                long period = detector.getPeriod();
+                System.out.printf( "cycle of period %d found at generation %d, starting at generation %d%n",
+                                   period, firstGeneration + g, detector.getCycleStart() );
+                if ( onCycle.equals( "stop" ) ) {
+                    generations = g;
+                }
+                else {
+                    long remaining = detector.stepsToReach( g, generations );
+                    for ( long i = 0; i < remaining; i++ )
+                        board.step();
+                    computed += remaining;
+                    System.out.printf( "skipped %d generations%n", generations - g - remaining );
+                }
+                break;
+            }
+        }
+        double seconds = ( System.nanoTime() - startTime ) / 1e9;
+
+        if ( checkpointer != null ) {
+            checkpointer.close();
+            try {
+                long last = firstGeneration + generations;
+                LifeSnapshot.write( new LifeFrame( board, last ), board.getRule().getNotation(),
+                                    Paths.get( checkpointFile ) );
+                System.out.printf( "snapshot of generation %d written to %s%n", last, checkpointFile );
+            }
+            catch ( IOException e ) {
+                System.err.println( "Can't write " + checkpointFile + ": " + e.getMessage() );
+            }
+        }
+
+        System.out.printf( "%d generations in %.3f seconds%n", generations, seconds );
+        System.out.printf( "%.1f generations/sec%n", computed / seconds );
+        System.out.printf( "%.4g cell updates/sec%n", (double) rows * columns * computed / seconds );
+        System.out.printf( "final population %d%n", board.getPopulation() );
+        if ( board instanceof HashLifeBoard ) {
+            HashLifeBoard hashLife = (HashLifeBoard) board;
+            System.out.printf( "%d HashLife nodes, cap %d%n", hashLife.getNodeCount(), hashLife.getMaxNodes() );
+            if ( hashLife.isNearCap() )
+                System.out.println( "the pattern needed more than half the node cap, so the board was slowed down by"
+                                    + " frequent garbage collection" );
+        }
+        if ( board instanceof ShardedLifeBoard )
+            ( (ShardedLifeBoard) board ).close();
+        else if ( board instanceof ParallelLifeBoard )
+            ( (ParallelLifeBoard) board ).close();
+    }
+
+}  // end class LifeRunner.
@@ -0,0 +1,233 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The program that runs in each worker process of a ShardedLifeBoard. A worker owns one band of rows of the board,
+ * its "shard", which it keeps in a PackedLifeBoard that has two more rows than the band: row 0 holds a copy of the
+ * row just above the band, and the last row holds a copy of the row just below it. These copies are the "halo".
+ * Since the band spans the full width of the board, the PackedLifeBoard wraps the columns around correctly by itself,
+ * and with the halo rows in place it computes the next generation of every row of the band correctly. The halo rows
+ * themselves come out wrong, but they are replaced before the next generation is computed.
+ *
+ * To refresh the halo, each worker sends the top row of its band to the worker above it and the bottom row to the
+ * worker below it, and receives the neighboring rows from them, over sockets on the loopback interface that connect
+ * the workers in a ring. The sending is done by a second thread, so that two workers that are both sending a long
+ * row to each other can't block each other. The workers never wait for the coordinator between generations; the
+ * halo exchange itself keeps them in step. If there is only one shard, its halo rows are copied from its own band.
+ *
+ * The worker is started by the coordinator as:
+ *
+ *     java -cp CLASSPATH LifeShardWorker PORT SHARD
+ *
+ * where PORT is the port on which the coordinator is listening, and SHARD is the number of the worker's band. The
+ * worker opens a server socket for its neighbor above, connects to the coordinator, and sends its shard number and
+ * the port of that server socket. The coordinator replies with the number of shards, the worker's band, the number of
+ * columns, the rule, and the port of the worker below, and then sends the commands that are defined as constants in
+ * this class. The worker exits when it gets the QUIT command, or when the coordinator's connection is closed.
+ */
+public class LifeShardWorker {
+
+    static final int SET_ALIVE = 1;  // Followed by row within the band, column, and boolean. No reply.
+    static final int SET_RUN = 2;  // Followed by row within the band, column, and length. No reply.
+    static final int CLEAR = 3;  // No reply.
+    static final int RULE = 4;  // Followed by the rule in B/S notation, as a UTF string. No reply.
+    static final int STEP = 5;  // Compute one generation. The reply is the byte STEP, when it is done.
+    static final int CELLS = 6;  // The reply is the words of every row of the band, in PackedLifeBoard layout.
+    static final int POPULATION = 7;  // The reply is the number of living cells in the band, as a long.
+    static final int HASH = 8;  // The reply is the XOR of the cell hashes of the living cells in the band.
+    static final int QUIT = 9;  // No reply. The worker exits.
+
+    private final int firstRow;  // The row of the whole board that is the first row of the band.
+    private final int bandRows;  // The number of rows in the band.
+    private final int wordsPerRow;  // The number of longs in each row.
+    private final PackedLifeBoard board;  // The band, with one halo row above it and one below.
+
+    private final long[] top;  // Space for the top row of the band, to send to the worker above.
+    private final long[] bottom;  // Space for the bottom row of the band, to send to the worker below.
+    private final long[] halo;  // Space for a halo row that is received from a neighbor.
+
+    private DataInputStream upIn;  // Connection to the worker above, or null if there is only one shard.
+    private DataOutputStream upOut;
+    private DataInputStream downIn;  // Connection to the worker below, or null if there is only one shard.
+    private DataOutputStream downOut;
+    private ExecutorService sender;  // The thread that sends halo rows, or null if there is only one shard.
+
+    private LifeShardWorker( int firstRow, int bandRows, int columns ) {
+        this.firstRow = firstRow;
+        this.bandRows = bandRows;
+        board = new PackedLifeBoard( bandRows + 2, columns );
+        wordsPerRow = board.getWordsPerRow();
+        top = new long[ wordsPerRow ];
+        bottom = new long[ wordsPerRow ];
+        halo = new long[ wordsPerRow ];
+    }
+
+    public static void main( String[] args ) throws IOException {
+        int port = Integer.parseInt( args[0] );
+        int shard = Integer.parseInt( args[1] );
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        ServerSocket haloServer = new ServerSocket( 0, 1, loopback );
+        Socket control = new Socket( loopback, port );
+        control.setTcpNoDelay( true );
+        DataInputStream in = new DataInputStream( new BufferedInputStream( control.getInputStream() ) );
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( control.getOutputStream() ) );
+        out.writeInt( shard );
+        out.writeInt( haloServer.getLocalPort() );
+        out.flush();
+
+        int shards = in.readInt();
+        int firstRow = in.readInt();
+        int bandRows = in.readInt();
+        int columns = in.readInt();
+        String rule = in.readUTF();
+        int belowPort = in.readInt();
+        LifeShardWorker worker = new LifeShardWorker( firstRow, bandRows, columns );
+        worker.board.setRule( LifeRule.parse( rule ) );
+        if ( shards > 1 ) {
+            // Connect to the worker below first. Its server socket is already open, so this does not wait for that
+            // worker to accept, and every worker can then accept the connection from the worker above it.
+            Socket down = new Socket( loopback, belowPort );
+            Socket up = haloServer.accept();
+            worker.connect( up, down );
+        }
+        haloServer.close();
+        try {
+            worker.serve( in, out );
+        }
+        finally {
+            if ( worker.sender != null )
+                worker.sender.shutdownNow();
+            control.close();
+        }
+    }
+
+    private void connect( Socket up, Socket down ) throws IOException {
+        up.setTcpNoDelay( true );
+        down.setTcpNoDelay( true );
+        upIn = new DataInputStream( new BufferedInputStream( up.getInputStream() ) );
+        upOut = new DataOutputStream( new BufferedOutputStream( up.getOutputStream() ) );
+        downIn = new DataInputStream( new BufferedInputStream( down.getInputStream() ) );
+        downOut = new DataOutputStream( new BufferedOutputStream( down.getOutputStream() ) );
+        sender = Executors.newSingleThreadExecutor( task -> {
+            Thread thread = new Thread( task, "halo sender" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+    /**
+     * Carry out commands from the coordinator until it says to quit or closes the connection.
+     */
+    private void serve( DataInputStream in, DataOutputStream out ) throws IOException {
+        while ( true ) {
+            int command = in.read();
+            switch ( command ) {
+                case SET_ALIVE:
+                    board.setAlive( in.readInt() + 1, in.readInt(), in.readBoolean() );
+                    break;
+                case SET_RUN:
+                    board.setAliveRun( in.readInt() + 1, in.readInt(), in.readInt() );
+                    break;
+                case CLEAR:
+                    board.clear();
+                    break;
+                case RULE:
+                    board.setRule( LifeRule.parse( in.readUTF() ) );
+                    break;
+                case STEP:
+                    exchangeHalo();
+                    board.step();
+                    out.writeByte( STEP );
+                    out.flush();
+                    break;
+                case CELLS:
+                    for ( int r = 1; r <= bandRows; r++ ) {
+                        board.copyRow( r, halo, 0 );
+                        writeRow( out, halo );
+                    }
+                    out.flush();
+                    break;
+                case POPULATION:
+                    long population = 0;
+                    for ( int r = 1; r <= bandRows; r++ ) {
+                        board.copyRow( r, halo, 0 );
+                        for ( long word : halo )
+                            population += Long.bitCount( word );
+                    }
+                    out.writeLong( population );
+                    out.flush();
+                    break;
+                case HASH:
+                    long hash = 0;
+                    for ( int r = 1; r <= bandRows; r++ ) {
+                        board.copyRow( r, halo, 0 );
+                        for ( int w = 0; w < wordsPerRow; w++ )
+                            hash ^= PackedLifeBoard.hashBits( firstRow + r - 1, w, halo[w] );
+                    }
+                    out.writeLong( hash );
+                    out.flush();
+                    break;
+                case QUIT:
+                case -1:  // The coordinator closed the connection.
+                    return;
+                default:
+                    throw new IOException( "Unknown command " + command );
+            }
+        }
+    }
+
+    /**
+     * Send the top and bottom rows of the band to the neighboring workers, and replace the halo rows with the rows
+     * that they send.
+     */
+    private void exchangeHalo() throws IOException {
+        board.copyRow( 1, top, 0 );
+        board.copyRow( bandRows, bottom, 0 );
+        if ( sender == null ) {
+            board.setRow( 0, bottom, 0 );
+            board.setRow( bandRows + 1, top, 0 );
+            return;
+        }
+        Future<Void> sent = sender.submit( () -> {
+            writeRow( upOut, top );
+            upOut.flush();
+            writeRow( downOut, bottom );
+            downOut.flush();
+            return null;
+        } );
+        readRow( upIn, halo );
+        board.setRow( 0, halo, 0 );
+        readRow( downIn, halo );
+        board.setRow( bandRows + 1, halo, 0 );
+        try {
+            sent.get();
+        }
+        catch ( ExecutionException e ) {
+            throw new IOException( "Can't send a halo row", e.getCause() );
+        }
+        catch ( InterruptedException e ) {
+            throw new IOException( "Interrupted while sending a halo row", e );
+        }
+    }
+
+    static void writeRow( DataOutputStream out, long[] words ) throws IOException {
+        for ( long word : words )
+            out.writeLong( word );
+    }
+
+    static void readRow( DataInputStream in, long[] words ) throws IOException {
+        for ( int i = 0; i < words.length; i++ )
+            words[i] = in.readLong();
+    }
+
+}  // end class LifeShardWorker.
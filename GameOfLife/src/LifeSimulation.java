@@ -0,0 +1,201 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a LifeBoard on a thread of its own, computing generations as fast as it is allowed to, and makes the results
+ * available to a display as LifeFrames. The display does not wait for the simulation and the simulation does not wait
+ * for the display: the only thing that they share is a single AtomicReference that holds the most recent frame that
+ * the display has not yet taken. After computing a generation, the simulation thread checks whether that slot is
+ * empty; if it is, a copy of the board is put in it. The display takes whatever frame is there, if any, each time it
+ * draws. So the display always draws a recent generation, frames are never queued up, and the number of generations
+ * per second does not depend on the number of frames per second.
+ *
+ * While the simulation is running, the board belongs to the simulation thread and must not be used by any other
+ * thread. After stop() returns, the board can be used again, and it holds the last generation that was computed.
+ *
+ * If a LifeCheckpointer has been set, the simulation thread gives it each generation, so that snapshots of the board
+ * are saved while the simulation runs. If a CycleDetector has been set, the hash of each generation is checked, and
+ * the simulation stops by itself as soon as the board starts to repeat; isRunning() then returns false. If a
+ * LifeMetrics object has been set, the time taken to compute each generation is recorded in it. If a LifeHistory has
+ * been set, every generation is recorded in it, so that the game can be rewound after it stops.
+ *
+ * If computing a generation throws an exception, the simulation stops by itself, isRunning() returns false, and
+ * getFailure() returns the exception. The board then holds whatever the failed step left on it.
+ */
+public class LifeSimulation {
+
+    private final LifeBoard board;  // The board that is being run.
+    private final AtomicReference<LifeFrame> frame = new AtomicReference<>();  // The frame that is waiting for the
+                                                                                // display, or null.
+    private volatile long nanosPerGeneration;  // Minimum time between generations; zero means no limit.
+    private volatile boolean running;  // Set to false to ask the thread to stop.
+    private volatile long generation;  // Number of the generation that is on the board.
+    private volatile LifeCheckpointer checkpointer;  // Saves snapshots of the board, or null.
+    private volatile CycleDetector cycleDetector;  // Stops the simulation when the board repeats, or null.
+    private volatile LifeMetrics metrics;  // Records the time taken by each generation, or null.
+    private volatile LifeHistory history;  // Records every generation, or null.
+    private volatile Throwable failure;  // The exception that stopped the simulation thread, or null.
+    private Thread thread;  // The thread that computes generations, or null if it is not running.
+
+    /**
+     * Create a simulation for a board. The simulation does not start running until start() is called.
+     * @param generation the generation number of the cells that are now on the board.
+     */
+    public LifeSimulation( LifeBoard board, long generation ) {
+        this.board = board;
+        this.generation = generation;
+    }
+
+    /**
+     * Set the maximum number of generations per second. A value of zero or less means that generations are computed
+     * as fast as possible. This can be called while the simulation is running.
+     */
+    public void setGenerationsPerSecond( double rate ) {
+        nanosPerGeneration = rate <= 0 ? 0 : (long) ( 1e9 / rate );
+    }
+
+    /**
+     * Set the LifeCheckpointer that is told about each generation, or null for none.
+     */
+    public void setCheckpointer( LifeCheckpointer checkpointer ) {
+        this.checkpointer = checkpointer;
+    }
+
+    /**
+     * Set the CycleDetector that checks each generation, or null for none. The detector is only used by the simulation
+     * thread while the simulation is running; after it stops, its getPeriod() tells whether a cycle was found.
+     */
+    public void setCycleDetector( CycleDetector detector ) {
+        cycleDetector = detector;
+    }
+
+    /**
+     * Set the LifeMetrics that records how long each generation takes to compute, or null for none.
+     */
+    public void setMetrics( LifeMetrics metrics ) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Set the LifeHistory that records each generation, or null for none.
+     */
+    public void setHistory( LifeHistory history ) {
+        this.history = history;
+    }
+
+    /**
+     * Return true if the simulation thread has been started and has not stopped, either because stop() was called,
+     * because the CycleDetector found a cycle, or because computing a generation failed.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Return the exception that stopped the simulation thread, or null if it has not failed.
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Return the number of the generation that is currently on the board.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Start computing generations on a new thread. The thread is a daemon thread, so it does not keep the program
+     * running after the window is closed.
+     */
+    public synchronized void start() {
+        if ( thread != null )
+            return;
+        running = true;
+        thread = new Thread( this::run, "Life simulation" );
+        thread.setDaemon( true );
+        thread.start();
+    }
+
+    /**
+     * Stop computing generations, and wait for the simulation thread to finish the generation that it is working on.
+     */
+    public synchronized void stop() {
+        if ( thread == null )
+            return;
+        running = false;
+        LockSupport.unpark( thread );
+        boolean interrupted = false;
+        while ( thread.isAlive() ) {
+            try {
+                thread.join();
+            }
+            catch ( InterruptedException e ) {
+                interrupted = true;
+            }
+        }
+        thread = null;
+        if ( interrupted )
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Take the most recent frame that has not already been taken, or return null if there is no new frame. Taking a
+     * frame tells the simulation thread to provide another one after the next generation.
+     */
+    public LifeFrame takeFrame() {
+        return frame.getAndSet( null );
+    }
+
+    /**
+     * The body of the simulation thread.
+     */
+    private void run() {
+        try {
+            long nextTime = System.nanoTime();
+            while ( running ) {
+                LifeMetrics stats = metrics;
+                long startTime = System.nanoTime();
+                board.step();
+                if ( stats != null )
+                    stats.generationComputed( System.nanoTime() - startTime );
+                generation++;
+                LifeHistory recorder = history;
+                if ( recorder != null )
+                    recorder.record( board, generation );
+                if ( frame.get() == null )
+                    frame.set( new LifeFrame( board, generation ) );  // Only this thread ever stores a non-null frame.
+                LifeCheckpointer saver = checkpointer;
+                if ( saver != null )
+                    saver.generationDone( board, generation );
+                CycleDetector detector = cycleDetector;
+                if ( detector != null && detector.check( board.getHash(), generation ) > 0 ) {
+                    frame.set( new LifeFrame( board, generation ) );  // Make sure the display gets the last generation.
+                    running = false;
+                    break;
+                }
+                long delay = nanosPerGeneration;
+                if ( delay > 0 ) {
+                    nextTime += delay;
+                    long wait;
+                    while ( running && ( wait = nextTime - System.nanoTime() ) > 0 )
+                        LockSupport.parkNanos( this, wait );
+                    if ( System.nanoTime() - nextTime > TimeUnit.SECONDS.toNanos( 1 ) )
+                        nextTime = System.nanoTime();  // Fell far behind; don't try to catch up.
+                }
+                else {
+                    nextTime = System.nanoTime();
+                }
+            }
+        }
+        catch ( RuntimeException | Error e ) {
+            failure = e;
+        }
+        finally {
+            running = false;  // However the thread ends, let the display know that it is not running any more.
+        }
+    }
+
+}  // end class LifeSimulation.
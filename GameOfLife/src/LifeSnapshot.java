@@ -0,0 +1,346 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A saved copy of a Life board, in a compact binary file. The file starts with a header:
+ *
+ *     magic number "LIFS"    4 bytes
+ *     format version         4-byte int, currently 1
+ *     rows, columns          4-byte ints
+ *     generation             8-byte long
+ *     rule                   2-byte length followed by that many ASCII bytes, such as "B3/S23"
+ *
+ * All numbers in the header are big-endian. The header is followed by one record for each row of cells. Each record
+ * starts with a byte that tells how the row is stored, and the writer picks whichever way is smaller:
+ *
+ *     0    the row is empty, and nothing follows.
+ *     1    runs: the number of runs of living cells, then for each run the number of dead cells before it and the
+ *          length of the run. These numbers are written as "varints", 7 bits per byte with the high bit set on every
+ *          byte but the last, so most of them take only one or two bytes.
+ *     2    bits: one bit for each cell, eight cells per byte, with the first cell in the low-order bit.
+ *
+ * So a sparse board takes a few bytes for each run of cells, and no row ever takes more than one byte more than its
+ * raw bits. A 16384 by 16384 board is at most 32 megabytes.
+ *
+ * Snapshots are written from a LifeFrame through a FileChannel, first to a temporary file that then replaces the real
+ * one, so an old snapshot is never left half overwritten. They are read back through a memory-mapped buffer.
+ */
+public final class LifeSnapshot {
+
+    private static final int MAGIC = 0x4C494653;  // "LIFS" in ASCII.
+    private static final int VERSION = 1;
+    private static final int EMPTY_ROW = 0;
+    private static final int RUN_ROW = 1;
+    private static final int BIT_ROW = 2;
+    private static final int BUFFER_SIZE = 1 << 20;  // Size of the buffer that is used for writing.
+
+    private final int rows;
+    private final int columns;
+    private final long generation;
+    private final String rule;
+    private final MappedByteBuffer data;  // The whole file.
+    private final int bodyStart;  // Position in data of the first row record.
+
+    private LifeSnapshot( int rows, int columns, long generation, String rule, MappedByteBuffer data,
+                          int bodyStart ) {
+        this.rows = rows;
+        this.columns = columns;
+        this.generation = generation;
+        this.rule = rule;
+        this.data = data;
+        this.bodyStart = bodyStart;
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    public int getColumnCount() {
+        return columns;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public String getRule() {
+        return rule;
+    }
+
+    /**
+     * Return true if the file starts with the magic number of a snapshot file.
+     */
+    public static boolean isSnapshot( Path file ) throws IOException {
+        try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) ) {
+            ByteBuffer start = ByteBuffer.allocate( 4 );
+            while ( start.hasRemaining() && channel.read( start ) >= 0 ) {
+            }
+            return ! start.hasRemaining() && start.getInt( 0 ) == MAGIC;
+        }
+    }
+
+    /**
+     * Open a snapshot file and read its header. The file is mapped into memory; the cells are not decoded until
+     * restore() is called.
+     * @throws IOException if the file can't be read or is not a snapshot file.
+     */
+    public static LifeSnapshot open( Path file ) throws IOException {
+        MappedByteBuffer data;
+        try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) ) {
+            if ( channel.size() > Integer.MAX_VALUE )
+                throw new IOException( "The snapshot file is too big." );
+            data = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+        }
+        try {
+            if ( data.getInt() != MAGIC )
+                throw new IOException( "This is not a Life snapshot file." );
+            int version = data.getInt();
+            if ( version != VERSION )
+                throw new IOException( "Unsupported snapshot version " + version + "." );
+            int rows = data.getInt();
+            int columns = data.getInt();
+            long generation = data.getLong();
+            byte[] ruleBytes = new byte[ data.getShort() & 0xFFFF ];
+            data.get( ruleBytes );
+            if ( rows <= 0 || columns <= 0 )
+                throw new IOException( "Bad board size in snapshot." );
+            return new LifeSnapshot( rows, columns, generation, new String( ruleBytes, StandardCharsets.US_ASCII ),
+                                     data, data.position() );
+        }
+        catch ( java.nio.BufferUnderflowException e ) {
+            throw new IOException( "The snapshot file is incomplete." );
+        }
+    }
+
+    /**
+     * Put the living cells from the snapshot on a board, which should be empty. If the board is smaller than the
+     * snapshot, cells that don't fit are left out. Returns the number of living cells that were put on the board.
+     * @throws IOException if the file is damaged.
+     */
+    public long restore( LifeBoard board ) throws IOException {
+        ByteBuffer in = data.duplicate();
+        in.position( bodyStart );
+        int boardRows = Math.min( rows, board.getRowCount() );
+        int boardColumns = board.getColumnCount();
+        int rowBytes = ( columns + 7 ) >>> 3;
+        long count = 0;
+        try {
+            for ( int r = 0; r < rows; r++ ) {
+                int kind = in.get();
+                if ( kind == RUN_ROW ) {
+                    long runs = readVarint( in );
+                    long col = 0;
+                    for ( long i = 0; i < runs; i++ ) {
+                        col += readVarint( in );
+                        long length = readVarint( in );
+                        if ( col + length > columns )
+                            throw new IOException( "Bad run in row " + r + " of snapshot." );
+                        if ( r < boardRows && col < boardColumns ) {
+                            int n = (int) Math.min( length, boardColumns - col );
+                            board.setAliveRun( r, (int) col, n );
+                            count += n;
+                        }
+                        col += length;
+                    }
+                }
+                else if ( kind == BIT_ROW ) {
+                    for ( int i = 0; i < rowBytes; i += 8 ) {
+                        long word = 0;
+                        for ( int k = 0; k < 8 && i + k < rowBytes; k++ )
+                            word |= ( in.get() & 0xFFL ) << ( 8 * k );
+                        if ( r < boardRows )
+                            count += setRuns( board, r, i * 8, word, boardColumns );
+                    }
+                }
+                else if ( kind != EMPTY_ROW ) {
+                    throw new IOException( "Bad row in snapshot." );
+                }
+            }
+        }
+        catch ( java.nio.BufferUnderflowException e ) {
+            throw new IOException( "The snapshot file is incomplete." );
+        }
+        return count;
+    }
+
+    /**
+     * Write a snapshot of a frame to a file, recording the given rule. The snapshot is written to a temporary file in
+     * the same directory, which then replaces the file.
+     */
+    public static void write( LifeFrame frame, String rule, Path file ) throws IOException {
+        Path temp = file.resolveSibling( file.getFileName() + ".tmp" );
+        ByteBuffer out = ByteBuffer.allocateDirect( BUFFER_SIZE );
+        try ( FileChannel channel = FileChannel.open( temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                      StandardOpenOption.TRUNCATE_EXISTING ) ) {
+            byte[] ruleBytes = rule.getBytes( StandardCharsets.US_ASCII );
+            out.putInt( MAGIC ).putInt( VERSION ).putInt( frame.getRowCount() ).putInt( frame.getColumnCount() );
+            out.putLong( frame.getGeneration() ).putShort( (short) ruleBytes.length ).put( ruleBytes );
+
+            int columns = frame.getColumnCount();
+            int wordsPerRow = frame.getWordsPerRow();
+            int rowBytes = ( columns + 7 ) >>> 3;
+            for ( int r = 0; r < frame.getRowCount(); r++ ) {
+                int first = r * wordsPerRow;
+                long runBytes = runSize( frame, first, rowBytes );
+                makeRoom( out, channel, 11 );
+                if ( runBytes == 0 ) {
+                    out.put( (byte) EMPTY_ROW );
+                }
+                else if ( runBytes < rowBytes ) {
+                    out.put( (byte) RUN_ROW );
+                    long runs = 0;
+                    long carry = 0;  // The last bit of the previous word, shifted to bit 0.
+                    for ( int w = 0; w < wordsPerRow; w++ ) {
+                        long word = frame.getWord( first + w );
+                        runs += Long.bitCount( word & ~( ( word << 1 ) | carry ) );  // Cells that start a run.
+                        carry = word >>> 63;
+                    }
+                    putVarint( out, runs );
+                    long end = 0;  // Column just after the previous run.
+                    while ( runs-- > 0 ) {
+                        long start = nextCell( frame, first, end, true );
+                        long next = nextCell( frame, first, start, false );
+                        makeRoom( out, channel, 20 );
+                        putVarint( out, start - end );
+                        putVarint( out, next - start );
+                        end = next;
+                    }
+                }
+                else {
+                    out.put( (byte) BIT_ROW );
+                    for ( int i = 0; i < rowBytes; i += 8 ) {
+                        long word = frame.getWord( first + ( i >>> 3 ) );
+                        makeRoom( out, channel, 8 );
+                        for ( int k = 0; k < 8 && i + k < rowBytes; k++ )
+                            out.put( (byte) ( word >>> ( 8 * k ) ) );
+                    }
+                }
+            }
+            flush( out, channel );
+            channel.force( false );
+        }
+        try {
+            Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        }
+        catch ( AtomicMoveNotSupportedException e ) {
+            Files.move( temp, file, StandardCopyOption.REPLACE_EXISTING );
+        }
+    }
+
+    /**
+     * Return the number of bytes that a row would take when it is written as runs, not counting the byte that starts
+     * the record, or zero if the row is empty. Once the size reaches limit, counting stops and limit is returned,
+     * since the row will be written as bits anyway.
+     */
+    private static long runSize( LifeFrame frame, int first, long limit ) {
+        long size = 0;
+        long runs = 0;
+        long end = 0;
+        while ( size < limit ) {
+            long start = nextCell( frame, first, end, true );
+            if ( start == frame.getColumnCount() )
+                break;
+            long next = nextCell( frame, first, start, false );
+            size += varintSize( start - end ) + varintSize( next - start );
+            runs++;
+            end = next;
+        }
+        if ( runs == 0 )
+            return 0;
+        return Math.min( limit, size + varintSize( runs ) );
+    }
+
+    /**
+     * Return the first column, at or after col, of a cell in the row that is alive ( or dead, if alive is false ). If
+     * there is no such cell, the number of columns is returned.
+     */
+    private static long nextCell( LifeFrame frame, int first, long col, boolean alive ) {
+        int columns = frame.getColumnCount();
+        int wordsPerRow = frame.getWordsPerRow();
+        int w = (int) ( col >>> 6 );
+        if ( w >= wordsPerRow )
+            return columns;
+        long word = frame.getWord( first + w );
+        if ( ! alive )
+            word = ~word;
+        word &= -1L << col;
+        while ( word == 0 ) {
+            if ( ++w == wordsPerRow )
+                return columns;
+            word = alive ? frame.getWord( first + w ) : ~frame.getWord( first + w );
+        }
+        return Math.min( columns, w * 64L + Long.numberOfTrailingZeros( word ) );
+    }
+
+    /**
+     * Set the runs of living cells in one word of bits, which hold the cells starting at column base.
+     */
+    static long setRuns( LifeBoard board, int row, int base, long word, int boardColumns ) {
+        long count = 0;
+        while ( word != 0 ) {
+            int start = Long.numberOfTrailingZeros( word );
+            int length = Long.numberOfTrailingZeros( ~( word >>> start ) );  // 64 if every bit from start on is set.
+            length = Math.min( length, 64 - start );
+            int n = Math.min( length, boardColumns - ( base + start ) );
+            if ( n > 0 ) {
+                board.setAliveRun( row, base + start, n );
+                count += n;
+            }
+            if ( start + length == 64 )
+                break;
+            word &= -1L << ( start + length );
+        }
+        return count;
+    }
+
+    /**
+     * Make sure that there is room for at least the given number of bytes in the buffer, by writing out what is in it
+     * if necessary.
+     */
+    private static void makeRoom( ByteBuffer out, FileChannel channel, int bytes ) throws IOException {
+        if ( out.remaining() < bytes )
+            flush( out, channel );
+    }
+
+    private static void flush( ByteBuffer out, FileChannel channel ) throws IOException {
+        out.flip();
+        while ( out.hasRemaining() )
+            channel.write( out );
+        out.clear();
+    }
+
+    private static void putVarint( ByteBuffer out, long value ) {
+        while ( ( value & ~0x7FL ) != 0 ) {
+            out.put( (byte) ( ( value & 0x7F ) | 0x80 ) );
+            value >>>= 7;
+        }
+        out.put( (byte) value );
+    }
+
+    private static int varintSize( long value ) {
+        int size = 1;
+        while ( ( value >>>= 7 ) != 0 )
+            size++;
+        return size;
+    }
+
+    private static long readVarint( ByteBuffer in ) throws IOException {
+        long value = 0;
+        for ( int shift = 0; shift < 64; shift += 7 ) {
+            int b = in.get();
+            value |= (long) ( b & 0x7F ) << shift;
+            if ( ( b & 0x80 ) == 0 )
+                return value;
+        }
+        throw new IOException( "Bad number in snapshot." );
+    }
+
+}  // end class LifeSnapshot.
@@ -0,0 +1,217 @@
+/**
+ * A LifeViewport describes which part of a Life board is shown on the screen and at what scale, so that a board can
+ * be much bigger than the window that displays it. The view is divided into "squares", one for each rectangle in the
+ * MosaicCanvas that draws it. The zoom level sets the size of the squares:
+ *
+ *   - When the zoom is zero or more, each square shows one cell and is 2^zoom pixels on a side.
+ *   - When the zoom is negative, each square is a single pixel that shows a block of 2^-zoom by 2^-zoom cells.
+ *     The display shows how many of those cells are alive. Instead of counting every cell in a big block, at most
+ *     MAX_SAMPLES by MAX_SAMPLES evenly spaced cells are looked at, so the cost of drawing the view depends only on
+ *     the size of the window, not on the size of the board.
+ *
+ * The view can be moved around the board and zoomed in and out, but it never moves past the edges of the board.
+ * This class does no drawing itself; it only converts between squares on the screen and cells on the board.
+ */
+public class LifeViewport {
+
+    /**
+     * The largest zoom level. At this zoom, each cell is 32 pixels on a side.
+     */
+    public static final int MAX_ZOOM = 5;
+
+    /**
+     * The largest number of cells that are looked at along each side of a square, when the view is zoomed out.
+     */
+    public static final int MAX_SAMPLES = 4;
+
+    /**
+     * Anything that can report whether the cell in a given row and column is alive, such as a LifeBoard or a
+     * LifeFrame, which can be given as board::isAlive or frame::isAlive.
+     */
+    public interface CellSource {
+        boolean isAlive( int row, int col );
+    }
+
+    private final int boardRows;  // Number of rows on the board.
+    private final int boardColumns;  // Number of columns on the board.
+    private final int width;  // Width of the view, in pixels.
+    private final int height;  // Height of the view, in pixels.
+    private final int minZoom;  // The zoom level at which the whole board just fits in the view.
+
+    private int zoom;  // The current zoom level, from minZoom to MAX_ZOOM.
+    private double top;  // The board row at the top edge of the view. Can be fractional while the view is dragged.
+    private double left;  // The board column at the left edge of the view.
+
+    /**
+     * Create a viewport for a board with the given number of rows and columns, shown in a view with the given width
+     * and height in pixels. At first, the view is zoomed out just far enough to show the whole board.
+     */
+    public LifeViewport( int boardRows, int boardColumns, int width, int height ) {
+        if ( boardRows <= 0 || boardColumns <= 0 || width <= 0 || height <= 0 )
+            throw new IllegalArgumentException( "The board and the view must have positive sizes." );
+        this.boardRows = boardRows;
+        this.boardColumns = boardColumns;
+        this.width = width;
+        this.height = height;
+        int z = MAX_ZOOM;
+        while ( visibleCells( height, z ) < boardRows || visibleCells( width, z ) < boardColumns )
+            z--;
+        minZoom = z;
+        zoom = z;
+    }
+
+    /**
+     * Return the current zoom level.
+     */
+    public int getZoom() {
+        return zoom;
+    }
+
+    /**
+     * Return the smallest zoom level, at which the whole board fits in the view.
+     */
+    public int getMinZoom() {
+        return minZoom;
+    }
+
+    /**
+     * Return the width and height of a square, in pixels.
+     */
+    public int getCellSize() {
+        return zoom >= 0 ? 1 << zoom : 1;
+    }
+
+    /**
+     * Return the number of rows and columns of cells that are shown in each square. This is 1 unless the view is
+     * zoomed out.
+     */
+    public int getCellsPerSquare() {
+        return zoom >= 0 ? 1 : 1 << -zoom;
+    }
+
+    /**
+     * Return the number of rows of squares in the view.
+     */
+    public int getSquareRowCount() {
+        return ( height + getCellSize() - 1 ) / getCellSize();
+    }
+
+    /**
+     * Return the number of columns of squares in the view.
+     */
+    public int getSquareColumnCount() {
+        return ( width + getCellSize() - 1 ) / getCellSize();
+    }
+
+    /**
+     * Return the board row that is shown at the top of the view.
+     */
+    public int getTopRow() {
+        return (int) top;
+    }
+
+    /**
+     * Return the board column that is shown at the left edge of the view.
+     */
+    public int getLeftColumn() {
+        return (int) left;
+    }
+
+    /**
+     * Return the first board row that is shown in the given row of squares. The result can be past the bottom of the
+     * board, when the whole board fits in the view.
+     */
+    public int boardRow( int squareRow ) {
+        return getTopRow() + squareRow * getCellsPerSquare();
+    }
+
+    /**
+     * Return the first board column that is shown in the given column of squares. The result can be past the right
+     * edge of the board, when the whole board fits in the view.
+     */
+    public int boardColumn( int squareColumn ) {
+        return getLeftColumn() + squareColumn * getCellsPerSquare();
+    }
+
+    /**
+     * Return the number of cells that countAlive() looks at in each square.
+     */
+    public int getSampleCount() {
+        int samples = Math.min( getCellsPerSquare(), MAX_SAMPLES );
+        return samples * samples;
+    }
+
+    /**
+     * Return how many of the sampled cells in a square are alive, a number from zero to getSampleCount(). When the
+     * view is not zoomed out, this is 1 if the cell in the square is alive and 0 if not. Cells that are off the board
+     * count as dead. The cell in the top left corner of the square is always one of the samples.
+     */
+    public int countAlive( CellSource cells, int squareRow, int squareColumn ) {
+        int cellsPerSquare = getCellsPerSquare();
+        int samples = Math.min( cellsPerSquare, MAX_SAMPLES );
+        int spacing = cellsPerSquare / samples;
+        int firstRow = boardRow( squareRow );
+        int firstColumn = boardColumn( squareColumn );
+        int count = 0;
+        for ( int i = 0; i < samples; i++ ) {
+            int row = firstRow + i * spacing;
+            if ( row >= boardRows )
+                break;
+            for ( int j = 0; j < samples; j++ ) {
+                int col = firstColumn + j * spacing;
+                if ( col >= boardColumns )
+                    break;
+                if ( cells.isAlive( row, col ) )
+                    count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Zoom in ( for a positive number of steps ) or out ( for a negative number ), keeping the cell that is at the
+     * pixel ( x, y ) of the view in the same place. Each step doubles or halves the size of the cells. Returns true if
+     * the zoom level changed, or false if it was already as far in or out as it can go.
+     */
+    public boolean zoom( int steps, double x, double y ) {
+        int newZoom = Math.max( minZoom, Math.min( MAX_ZOOM, zoom + steps ) );
+        if ( newZoom == zoom )
+            return false;
+        double row = top + y / getCellSize() * getCellsPerSquare();
+        double col = left + x / getCellSize() * getCellsPerSquare();
+        zoom = newZoom;
+        top = row - y / getCellSize() * getCellsPerSquare();
+        left = col - x / getCellSize() * getCellsPerSquare();
+        clampOrigin();
+        return true;
+    }
+
+    /**
+     * Move the picture on the screen by dx pixels to the right and dy pixels down, so the view moves over the board
+     * in the opposite direction. Returns true if the part of the board that is shown changed.
+     */
+    public boolean pan( double dx, double dy ) {
+        int oldTop = getTopRow();
+        int oldLeft = getLeftColumn();
+        top -= dy / getCellSize() * getCellsPerSquare();
+        left -= dx / getCellSize() * getCellsPerSquare();
+        clampOrigin();
+        return getTopRow() != oldTop || getLeftColumn() != oldLeft;
+    }
+
+    /**
+     * Keep the view from moving off the board. If the whole board fits in the view, it is shown at the top left.
+     */
+    private void clampOrigin() {
+        top = Math.max( 0, Math.min( top, boardRows - visibleCells( height, zoom ) ) );
+        left = Math.max( 0, Math.min( left, boardColumns - visibleCells( width, zoom ) ) );
+    }
+
+    /**
+     * Return the number of cells that fit along a side of the view that is the given number of pixels long.
+     */
+    private static long visibleCells( int pixels, int zoom ) {
+        return zoom >= 0 ? pixels >> zoom : (long) pixels << -zoom;
+    }
+
+}  // end class LifeViewport.
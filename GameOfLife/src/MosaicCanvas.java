@@ -1,7 +1,12 @@
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
 import javafx.application.Platform;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  *  A MosaicPanel object represents a grid containing rows
@@ -32,14 +37,41 @@ public class MosaicCanvas extends Canvas {
                                     //       flat rects are used to draw the rectangles.
     private boolean autopaint = true;  // If true, then when a square's color is set, 
                                        //     repaint is called automatically.
-    private Color[][] grid; // An array that contains the rectangles' colors.
-                            //   If a null occurs in this array, the rectangle
-                            //   is drawn in the default color, and "grouting"
-                            //   will be drawn around that rectangle only if
-                            //   alwaysDrawGrouting is true.  Also, the 
-                            //   rectangle is drawn as a flat rectangle rather
-                            //   than as a 3D rectangle.
+    private int[] grid; // An array that contains the rectangles' colors, row by row,
+                        //   so the color for row r and column c is at index
+                        //   r*columns + c.  Each color is stored as an int that
+                        //   holds 8 bits each of alpha, red, green, and blue.
+                        //   If a 0 occurs in this array, no color has been set:
+                        //   the rectangle is drawn in the default color, and
+                        //   "grouting" will be drawn around that rectangle only
+                        //   if alwaysDrawGrouting is true.  Also, the 
+                        //   rectangle is drawn as a flat rectangle rather
+                        //   than as a 3D rectangle.
     private GraphicsContext g; // The graphics context for drawing on this canvas.
+    private boolean[] changed;    // changed[r*columns + c] is true if the color of that
+                                  //   rectangle was changed while autopaint was false, and
+                                  //   the rectangle has not been redrawn since.
+    private int[] changedList;    // The changed rectangles, in the order in which they
+                                  //   were changed, encoded as row*columns + column.
+    private int changedCount;     // The number of rectangles in changedList.
+    private boolean redrawAll = true;  // If true, the picture on the screen might not match
+                                       //   the grid apart from the changed rectangles, so
+                                       //   the whole mosaic must be redrawn.
+    private boolean usePixelBuffer;  // If true, rectangles are drawn into the pixels array
+                                     //   rather than with the graphics context.
+    private int[] pixels;  // ARGB color of each pixel of the canvas, row by row, when
+                           //   usePixelBuffer is true.
+    private int bufferWidth, bufferHeight;  // Size of the pixel buffer.
+    private WritableImage image;  // Image used to copy the pixel buffer to the canvas.
+    private int dirtyLeft, dirtyTop, dirtyRight, dirtyBottom;  // Bounds of the part of the
+                                                               //   pixel buffer that has changed
+                                                               //   since it was last copied.
+    private int lastFillARGB;   // The last color that was used to draw a flat rectangle
+    private Color lastFillColor; //   with the graphics context, and the same color as a
+                                 //   Color object.
+    private final TileCache tiles = new TileCache();  // Pre-rendered 3D squares, reused
+                                                      //   for every square of the same
+                                                      //   color and size.
 
 
     //------------------------ constructors -----------------------------
@@ -90,7 +122,9 @@ public class MosaicCanvas extends Canvas {
             throw new IllegalArgumentException("Rows and Columns must be greater than zero.");
         preferredBlockHeight = Math.max( preferredBlockHeight, 5);
         preferredBlockWidth = Math.max( preferredBlockWidth, 5);
-        grid = new Color[rows][columns];
+        grid = new int[rows*columns];
+        changed = new boolean[rows*columns];
+        changedList = new int[64];
         defaultColor = Color.BLACK;
         groutingColor = Color.GRAY;
         alwaysDrawGrouting = false;
@@ -179,7 +213,38 @@ public class MosaicCanvas extends Canvas {
      * The default value of use3D is true;
      */
     public void setUse3D(boolean use3D) {
-        this.use3D = use3D;
+        if (this.use3D != use3D) {
+            this.use3D = use3D;
+            redrawAll = true;
+        }
+    }
+
+
+    /**
+     * Get the value of the usePixelBuffer property.
+     */
+    public boolean getUsePixelBuffer() {
+        return usePixelBuffer;
+    }
+
+
+    /**
+     * Set the usePixelBuffer property.  When this property is false, each
+     * rectangle is drawn with several calls to the canvas's GraphicsContext,
+     * which becomes very slow when the mosaic has hundreds of thousands of
+     * rectangles.  When it is true, rectangles, including their grouting and
+     * 3D edges, are drawn by storing colors directly into an array that holds
+     * one int for each pixel of the canvas, and the changed part of that array
+     * is copied to the canvas through a WritableImage in a single operation
+     * each time the mosaic is redrawn.  The default value is false.
+     */
+    public void setUsePixelBuffer(boolean use) {
+        if (usePixelBuffer != use) {
+            usePixelBuffer = use;
+            pixels = null;
+            image = null;
+            forceRedraw();
+        }
     }
 
 
@@ -201,15 +266,16 @@ public class MosaicCanvas extends Canvas {
     public void setGridSize(int rows, int columns, boolean preserveData) {
         if (rows <= 0 && columns <= 0) 
             throw new IllegalArgumentException("Rows and columns must be positive.");
-        Color[][] newGrid = new Color[rows][columns];
+        int[] newGrid = new int[rows*columns];
         if (preserveData) {
             int rowMax = Math.min(rows,this.rows);
             int colMax = Math.min(columns,this.columns);
             for (int r = 0; r < rowMax; r++)
-                for (int c = 0; c < colMax; c++)
-                    newGrid[r][c] = grid[r][c];
+                System.arraycopy(grid, r*this.columns, newGrid, r*columns, colMax);
         }
         grid = newGrid;
+        changed = new boolean[rows*columns];
+        changedCount = 0;
         this.rows = rows;
         this.columns = columns;
         forceRedraw();
@@ -241,11 +307,13 @@ public class MosaicCanvas extends Canvas {
      *  row and column of the grid.  This value can be null if no
      *  color has been set for that rectangle.  (Such rectangles are
      *  actually displayed using the defaultColor.)  If the specified
-     *  rectangle is outside the grid, then null is returned.
+     *  rectangle is outside the grid, then null is returned.  Colors
+     *  are stored with 8 bits for each component, so the value that is
+     *  returned can differ very slightly from the color that was set.
      */
     public Color getColor(int row, int col) {
-        if (row >=0 && row < rows && col >= 0 && col < columns)
-            return grid[row][col];
+        if (row >=0 && row < rows && col >= 0 && col < columns && grid[row*columns+col] != 0)
+            return toColor(grid[row*columns+col]);
         else
             return null;
     }
@@ -259,8 +327,8 @@ public class MosaicCanvas extends Canvas {
      *  then the red component of the defaultColor is returned.
      */
     public double getRed(int row, int col) {
-        if (row >=0 && row < rows && col >= 0 && col < columns && grid[row][col] != null)
-            return grid[row][col].getRed();
+        if (row >=0 && row < rows && col >= 0 && col < columns && grid[row*columns+col] != 0)
+            return ((grid[row*columns+col] >> 16) & 0xFF) / 255.0;
         else
             return defaultColor.getRed();
     }
@@ -274,8 +342,8 @@ public class MosaicCanvas extends Canvas {
      *  then the green component of the defaultColor is returned.
      */
     public double getGreen(int row, int col) {
-        if (row >=0 && row < rows && col >= 0 && col < columns && grid[row][col] != null)
-            return grid[row][col].getGreen();
+        if (row >=0 && row < rows && col >= 0 && col < columns && grid[row*columns+col] != 0)
+            return ((grid[row*columns+col] >> 8) & 0xFF) / 255.0;
         else
             return defaultColor.getGreen();
     }
@@ -289,8 +357,8 @@ public class MosaicCanvas extends Canvas {
      *  then the blue component of the defaultColor is returned.
      */
     public double getBlue(int row, int col) {
-        if (row >=0 && row < rows && col >= 0 && col < columns && grid[row][col] != null)
-            return grid[row][col].getBlue();
+        if (row >=0 && row < rows && col >= 0 && col < columns && grid[row*columns+col] != 0)
+            return ((grid[row*columns+col]) & 0xFF) / 255.0;
         else
             return defaultColor.getBlue();
     }
@@ -305,8 +373,7 @@ public class MosaicCanvas extends Canvas {
      */
     public void setColor(int row, int col, Color c) {
         if (row >=0 && row < rows && col >= 0 && col < columns) {
-            grid[row][col] = c;
-            drawSquare(row,col);
+            setSquare(row,col,colorValue(c));
         }
     }
 
@@ -322,8 +389,7 @@ public class MosaicCanvas extends Canvas {
             red = (red < 0)? 0 : ( (red > 1)? 1 : red );
             green = (green < 0)? 0 : ( (green > 1)? 1 : green );
             blue = (blue < 0)? 0 : ( (blue > 1)? 1 : blue );
-            grid[row][col] = Color.color(red,green,blue);
-            drawSquare(row,col);
+            setSquare(row,col,rgbToARGB(red,green,blue));
         }
     }
 
@@ -342,8 +408,71 @@ public class MosaicCanvas extends Canvas {
             hue = (hue < 0)? 0 : ( (hue > 360)? 360 : hue );
             saturation = (saturation < 0)? 0 : ( (saturation > 1)? 1 : saturation );
             brightness = (brightness < 0)? 0 : ( (brightness > 1)? 1 : brightness );
-            grid[row][col] = Color.hsb(hue,saturation,brightness);
-            drawSquare(row,col);
+            setSquare(row,col,hsbToARGB(hue,saturation,brightness));
+        }
+    }
+
+
+    /**
+     *  Return the color of the rectangle in the specified row and column
+     *  as an int that holds 8 bits each of alpha, red, green, and blue,
+     *  from the high byte to the low byte.  The value is 0 if no color
+     *  has been set for the rectangle, or if the rectangle is outside
+     *  the grid.
+     */
+    public int getARGB(int row, int col) {
+        if (row >=0 && row < rows && col >= 0 && col < columns)
+            return grid[row*columns+col];
+        else
+            return 0;
+    }
+
+
+    /**
+     *  Set the color of the rectangle in the specified row and column,
+     *  given as an int that holds 8 bits each of alpha, red, green, and
+     *  blue, from the high byte to the low byte.  A value of 0 means
+     *  that no color is set, like a null Color in setColor(row,col,c).
+     *  If the rectangle lies outside the grid, this is simply ignored.
+     */
+    public void setARGB(int row, int col, int argb) {
+        if (row >=0 && row < rows && col >= 0 && col < columns) {
+            setSquare(row,col,argb);
+        }
+    }
+
+
+    /**
+     *  Copy the colors of all the rectangles into an array, row by row,
+     *  in the form returned by getARGB(row,col), so the color of the
+     *  rectangle in row r and column c goes to index r*getColumnCount() + c.
+     *  The array must have room for getRowCount()*getColumnCount() values.
+     */
+    public void getARGBColors(int[] colors) {
+        System.arraycopy(grid, 0, colors, 0, grid.length);
+    }
+
+
+    /**
+     *  Set the colors of all the rectangles from an array in the form that
+     *  is filled in by getARGBColors(colors).  If autopaint is true, the
+     *  whole mosaic is redrawn once; if it is false, the rectangles whose
+     *  colors changed are recorded, as they are by setARGB(row,col,argb).
+     */
+    public void setARGBColors(int[] colors) {
+        if (colors.length < grid.length)
+            throw new IllegalArgumentException("The array does not have a color for every rectangle.");
+        if (autopaint) {
+            System.arraycopy(colors, 0, grid, 0, grid.length);
+            forceRedraw();
+        }
+        else {
+            for (int i = 0; i < grid.length; i++) {
+                if (grid[i] != colors[i]) {
+                    grid[i] = colors[i];
+                    markChanged(i);
+                }
+            }
         }
     }
 
@@ -354,10 +483,7 @@ public class MosaicCanvas extends Canvas {
      *  drawn as flat rather than 3D rects in the defaultColor.
      */
     public void fill(Color c) {
-        for (int i = 0; i < rows; i++)
-            for (int j = 0; j < columns; j++)
-                grid[i][j] = c;
-        forceRedraw();      
+        fillARGB(colorValue(c));
     }
 
 
@@ -371,7 +497,7 @@ public class MosaicCanvas extends Canvas {
         red = (red < 0)? 0 : ( (red > 1)? 1 : red );
         green = (green < 0)? 0 : ( (green > 1)? 1 : green );
         blue = (blue < 0)? 0 : ( (blue > 1)? 1 : blue );
-        fill(Color.color(red,green,blue));
+        fillARGB(rgbToARGB(red,green,blue));
     }
 
 
@@ -379,11 +505,8 @@ public class MosaicCanvas extends Canvas {
      *  Fill all the rectangles with randomly selected colors.
      */
     public void fillRandomly() {
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < columns; j++) {
-                grid[i][j] = Color.color(Math.random(),Math.random(),Math.random());
-            }
-        }
+        for (int i = 0; i < grid.length; i++)
+            grid[i] = rgbToARGB(Math.random(),Math.random(),Math.random());
         forceRedraw();
     }
 
@@ -413,8 +536,11 @@ public class MosaicCanvas extends Canvas {
      * that will all show up at once -- then the value of the autopaint property
      * can be set to false.  When the value is false, color changes are recorded
      * in the data for the mosaic but are not made on the screen.  When the
-     * autopaint property is reset to true, the changes are applied and the
-     * entire mosaic is repainted.  The default value of this property is
+     * autopaint property is reset to true, the changes are applied to the
+     * screen.  Only the rectangles whose colors actually changed are redrawn
+     * ( setting a rectangle to the color it already has does not count as a
+     * change ), so the cost of the update depends on how much of the mosaic
+     * changed rather than on its size.  The default value of this property is
      * true.  
      * <p>Note that clearing or filling the mosaic will cause an immediate 
      * screen update, even if autopaint is false.
@@ -424,7 +550,7 @@ public class MosaicCanvas extends Canvas {
             return;
         this.autopaint = autopaint;
         if (autopaint) 
-            forceRedraw();
+            paintChanges();
     }
 
     /**
@@ -436,9 +562,32 @@ public class MosaicCanvas extends Canvas {
      * @see #setAutopaint(boolean)
      */
     final public void forceRedraw() {
+        clearChanges();
+        redrawAll = false;
         drawAllSquares();
     }
 
+    /**
+     * Redraw just the rectangles whose colors have been changed since autopaint
+     * was set to false, or since the last redraw.  Like forceRedraw(), this
+     * can be used to show the changes that have been made to the mosaic while
+     * the autopaint property is false, but it does not redraw rectangles that
+     * have not changed.  ( If some other property, such as use3D, has changed,
+     * then the entire mosaic is redrawn. )
+     * @see #setAutopaint(boolean)
+     */
+    final public void paintChanges() {
+        if (redrawAll) {
+            forceRedraw();
+            return;
+        }
+        if (changedCount == 0)
+            return;
+        int[] squares = Arrays.copyOf(changedList, changedCount);
+        clearChanges();
+        drawSquares(squares);
+    }
+
     /**
      *   Return an object that contains the color data that
      *   is needed to redraw the mosaic.  This includes the 
@@ -447,20 +596,14 @@ public class MosaicCanvas extends Canvas {
      *   value of alwaysDrawGrouting.
      */
     public Object copyColorData() {
-            // Note:  This is a fudge.  The data about defaultColor,
-            // groutingColor, alwaysDrawGrouting, and use3D are added to the
-            // last row of the grid.  boolean values are represented by a
-            // null for false and a non-null value for true.
-        Color[][] copy = new Color[rows][columns];
-            // Replace the last row with a longer row.
-        copy[rows-1] = new Color[columns+4];
-        for (int r = 0; r < rows; r++)
-            for (int c = 0; c < columns; c++)
-                copy[r][c] = grid[r][c];
-        copy[rows-1][columns] = defaultColor;
-        copy[rows-1][columns+1] = groutingColor;
-        copy[rows-1][columns+2] = (alwaysDrawGrouting? Color.BLACK : null);
-        copy[rows-1][columns+3] = (use3D? Color.BLACK : null);
+        ColorData copy = new ColorData();
+        copy.rows = rows;
+        copy.columns = columns;
+        copy.colors = grid.clone();
+        copy.defaultColor = defaultColor;
+        copy.groutingColor = groutingColor;
+        copy.alwaysDrawGrouting = alwaysDrawGrouting;
+        copy.use3D = use3D;
         return copy;
     }
 
@@ -474,8 +617,24 @@ public class MosaicCanvas extends Canvas {
      *  alwaysDrawGrouting.  If the object is of the proper
      *  form, then the return value is true.  If not, the return
      *  value is false and no changes are made to the current data.
+     *  The Color[][] arrays made by copyColorData() in older versions
+     *  of this class are also accepted.
      */
     public boolean restoreColorData(Object data) {
+        if (data instanceof ColorData) {
+            ColorData copy = (ColorData)data;
+            rows = copy.rows;
+            columns = copy.columns;
+            grid = copy.colors.clone();
+            changed = new boolean[rows*columns];
+            changedCount = 0;
+            defaultColor = copy.defaultColor;
+            groutingColor = copy.groutingColor;
+            alwaysDrawGrouting = copy.alwaysDrawGrouting;
+            use3D = copy.use3D;
+            forceRedraw();
+            return true;
+        }
         if (data == null || !(data instanceof Color[][]))
             return false;
         Color[][] newGrid = (Color[][])data;
@@ -492,10 +651,12 @@ public class MosaicCanvas extends Canvas {
             return false;
         rows = newRows;
         columns = newColumns;
-        grid = new Color[rows][columns];
+        grid = new int[rows*columns];
         for (int i = 0; i < rows; i++)
             for (int j = 0; j < columns; j++)
-                grid[i][j] = newGrid[i][j];
+                grid[i*columns+j] = colorValue(newGrid[i][j]);
+        changed = new boolean[rows*columns];
+        changedCount = 0;
         defaultColor = newGrid[newRows-1][newColumns];
         groutingColor = newGrid[newRows-1][newColumns+1];
         alwaysDrawGrouting = newGrid[newRows-1][newColumns+2] != null;
@@ -541,14 +702,76 @@ public class MosaicCanvas extends Canvas {
     }
 
     // private implementation section -- the only part that actually draws squares
+
+    private void setSquare(int row, int col, int argb) {
+           // Set the color of a rectangle and draw it if autopaint is on.  When
+           // autopaint is off, record the rectangle as changed, unless its color
+           // is not really changing.
+        int square = row*columns + col;
+        if (autopaint) {
+            grid[square] = argb;
+            drawSquare(row,col);
+        }
+        else if (grid[square] != argb) {
+            grid[square] = argb;
+            markChanged(square);
+        }
+    }
+
+    private void markChanged(int square) {
+           // Add a rectangle, encoded as row*columns + column, to the list of
+           // changed rectangles, if it is not already there.
+        if (!changed[square]) {
+            changed[square] = true;
+            if (changedCount == changedList.length)
+                changedList = Arrays.copyOf(changedList, 2*changedCount);
+            changedList[changedCount++] = square;
+        }
+    }
+
+    private void fillARGB(int argb) {
+        Arrays.fill(grid, argb);
+        forceRedraw();      
+    }
+
+    private void clearChanges() {
+        for (int i = 0; i < changedCount; i++)
+            changed[changedList[i]] = false;
+        changedCount = 0;
+    }
+    
+    private void drawSquares(int[] squares) {
+           // draws the rectangles listed in the array, encoded as row*columns + column
+        int cols = columns;
+        if (Platform.isFxApplicationThread()) {
+            startDrawing();
+            for (int square : squares)
+                drawOneSquare(square / cols, square % cols);
+            finishDrawing();
+        }
+        else {
+            Platform.runLater( () -> {
+            startDrawing();
+            for (int square : squares)
+                drawOneSquare(square / cols, square % cols);
+            finishDrawing();
+            } );
+        }
+    }
     
     private void drawSquare(int row, int col) {
         if ( autopaint ) {
             if (Platform.isFxApplicationThread()) {
+                startDrawing();
                 drawOneSquare(row,col);
+                finishDrawing();
             }
             else {
-                Platform.runLater( () -> drawOneSquare(row,col) );
+                Platform.runLater( () -> {
+                    startDrawing();
+                    drawOneSquare(row,col);
+                    finishDrawing();
+                } );
             }
             try { // to avoid overwhelming the application thread with draw operations...
                 Thread.sleep(1);
@@ -560,15 +783,19 @@ public class MosaicCanvas extends Canvas {
     
     private void drawAllSquares() {
         if (Platform.isFxApplicationThread()) {
+            startDrawing();
             for (int r = 0; r < rows; r++)
                 for (int c = 0; c < columns; c++)
                     drawOneSquare(r,c);
+            finishDrawing();
         }
         else {
             Platform.runLater( () -> {
+            startDrawing();
             for (int r = 0; r < rows; r++)
                 for (int c = 0; c < columns; c++)
                     drawOneSquare(r,c);
+            finishDrawing();
             } );
         }
         try { // to avoid overwhelming the application thread with draw operations...
@@ -579,24 +806,31 @@ public class MosaicCanvas extends Canvas {
     }
     
     private void drawOneSquare(int row, int col) {
-           // only called from two previous methods
+           // only called from the drawing methods in this section
         double rowHeight = getHeight() / rows;
         double colWidth = getWidth() / columns;
         int y = (int)Math.round(rowHeight*row);
         int h = Math.max(1, (int)Math.round(rowHeight*(row+1)) - y);
         int x = (int)Math.round(colWidth*col);
         int w = Math.max(1, (int)Math.round(colWidth*(col+1)) - x);
-        Color c = grid[row][col];
-        g.setFill( (c == null)? defaultColor : c );
-        if (groutingColor == null || (c == null && !alwaysDrawGrouting)) {
-            if (!use3D || c == null)
+        int c = grid[row*columns + col];
+        if (usePixelBuffer) {
+            drawOneSquareInBuffer(c,x,y,w,h);
+            return;
+        }
+        if (groutingColor == null || (c == 0 && !alwaysDrawGrouting)) {
+            if (!use3D || c == 0) {
+                g.setFill( (c == 0)? defaultColor : fillColor(c) );
                 g.fillRect(x,y,w,h);
+            }
             else
                 fill3DRect(c,x,y,w,h);
         }
         else {
-            if (!use3D || c == null)
+            if (!use3D || c == 0) {
+                g.setFill( (c == 0)? defaultColor : fillColor(c) );
                 g.fillRect(x+1,y+1,w-2,h-2);
+            }
             else
                 fill3DRect(c,x+1,y+1,w-2,h-2);
             g.setStroke(groutingColor);
@@ -604,27 +838,266 @@ public class MosaicCanvas extends Canvas {
         }
     }
 
-    private void fill3DRect(Color color, int x, int y, int width, int height) {
-        double h = color.getHue();
-        double b = color.getBrightness();
-        double s = color.getSaturation();
-        if (b > 0.8) {
-            b = 0.8;
-            g.setFill(Color.hsb(h,s,b));
+    private Color fillColor(int argb) {
+           // Return a Color for a flat rectangle.  A Color object is only made
+           // when the color differs from the last one, since neighbouring squares
+           // usually share a color.
+        if (lastFillColor == null || argb != lastFillARGB) {
+            lastFillColor = toColor(argb);
+            lastFillARGB = argb;
         }
-        else if (b < 0.2) {
-            b = 0.2;
-            g.setFill(Color.hsb(h,s,b));
+        return lastFillColor;
+    }
+
+    private void fill3DRect(int color, int x, int y, int width, int height) {
+           // Draws a 3D square with a single drawImage, using a tile from the cache.
+        if (width <= 0 || height <= 0)
+            return;
+        g.drawImage(tiles.get(color,width,height).getImage(), x, y);
+    }
+
+
+    // pixel buffer drawing, used when usePixelBuffer is true
+
+    private void startDrawing() {
+           // Called before drawing some squares.  Makes sure that the pixel buffer
+           // matches the size of the canvas; if a new buffer is needed, every
+           // square is drawn into it, since it starts out blank.
+        if (!usePixelBuffer)
+            return;
+        int width = (int)Math.ceil(getWidth());
+        int height = (int)Math.ceil(getHeight());
+        if (pixels == null || width != bufferWidth || height != bufferHeight) {
+            bufferWidth = width;
+            bufferHeight = height;
+            pixels = new int[width*height];
+            image = new WritableImage(Math.max(1,width), Math.max(1,height));
+            for (int r = 0; r < rows; r++)
+                for (int c = 0; c < columns; c++)
+                    drawOneSquare(r,c);
         }
-        g.fillRect(x,y,width,height);
-        g.setStroke(Color.hsb(h,s,b+0.2));
-        g.strokeLine(x+0.5,y+0.5,x+width-0.5,y+0.5);
-        g.strokeLine(x+0.5,y+0.5,x+0.5,y+height-0.5);
-        g.setStroke(Color.hsb(h,s,b-0.2));
-        g.strokeLine(x+width-0.5,y+1.5,x+width-0.5,y+height-0.5);
-        g.strokeLine(x+1.5,y+height-0.5,x+width-0.5,y+height-0.5);
     }
-    
+
+    private void finishDrawing() {
+           // Called after drawing some squares.  Copies the part of the pixel buffer
+           // that has changed to the canvas.
+        if (!usePixelBuffer || dirtyRight <= dirtyLeft || dirtyBottom <= dirtyTop)
+            return;
+        int w = dirtyRight - dirtyLeft;
+        int h = dirtyBottom - dirtyTop;
+        image.getPixelWriter().setPixels(dirtyLeft, dirtyTop, w, h, PixelFormat.getIntArgbInstance(),
+                pixels, dirtyTop*bufferWidth + dirtyLeft, bufferWidth);
+        g.drawImage(image, dirtyLeft, dirtyTop, w, h, dirtyLeft, dirtyTop, w, h);
+        dirtyLeft = dirtyTop = dirtyRight = dirtyBottom = 0;
+    }
+
+    private void drawOneSquareInBuffer(int c, int x, int y, int w, int h) {
+           // Does the same drawing as drawOneSquare, but in the pixel buffer.
+        if (dirtyRight <= dirtyLeft || dirtyBottom <= dirtyTop) {
+            dirtyLeft = x;
+            dirtyTop = y;
+            dirtyRight = x + w;
+            dirtyBottom = y + h;
+        }
+        else {
+            dirtyLeft = Math.min(dirtyLeft, x);
+            dirtyTop = Math.min(dirtyTop, y);
+            dirtyRight = Math.max(dirtyRight, x + w);
+            dirtyBottom = Math.max(dirtyBottom, y + h);
+        }
+        dirtyRight = Math.min(dirtyRight, bufferWidth);
+        dirtyBottom = Math.min(dirtyBottom, bufferHeight);
+        int fill = (c == 0)? argb(defaultColor) : c;
+        if (groutingColor == null || (c == 0 && !alwaysDrawGrouting)) {
+            if (!use3D || c == 0)
+                fillPixels(fill,x,y,w,h);
+            else
+                fill3DPixels(c,x,y,w,h);
+        }
+        else {
+            if (!use3D || c == 0)
+                fillPixels(fill,x+1,y+1,w-2,h-2);
+            else
+                fill3DPixels(c,x+1,y+1,w-2,h-2);
+            int grout = argb(groutingColor);
+            fillPixels(grout,x,y,w,1);
+            fillPixels(grout,x,y+h-1,w,1);
+            fillPixels(grout,x,y,1,h);
+            fillPixels(grout,x+w-1,y,1,h);
+        }
+    }
+
+    private void fill3DPixels(int color, int x, int y, int width, int height) {
+           // Does the same drawing as fill3DRect, but in the pixel buffer, by
+           // copying the rows of a tile from the cache.
+        if (width <= 0 || height <= 0)
+            return;
+        int[] tile = tiles.get(color,width,height).pixels;
+        int left = Math.max(x,0);
+        int top = Math.max(y,0);
+        int right = Math.min(x + width, bufferWidth);
+        int bottom = Math.min(y + height, bufferHeight);
+        for (int row = top; row < bottom && left < right; row++)
+            System.arraycopy(tile, (row-y)*width + (left-x), pixels, row*bufferWidth + left, right - left);
+    }
+
+    private void fillPixels(int argb, int x, int y, int width, int height) {
+           // Fill a rectangle in the pixel buffer, clipped to the buffer.
+        int left = Math.max(x,0);
+        int top = Math.max(y,0);
+        int right = Math.min(x + width, bufferWidth);
+        int bottom = Math.min(y + height, bufferHeight);
+        for (int row = top; row < bottom; row++) {
+            int start = row*bufferWidth;
+            Arrays.fill(pixels, start + left, Math.max(start + left, start + right), argb);
+        }
+    }
+
+    private static int argb(Color c) {
+           // Convert a color to an int with 8 bits each of alpha, red, green, and blue.
+        return ((int)Math.round(c.getOpacity()*255) << 24) | ((int)Math.round(c.getRed()*255) << 16)
+                | ((int)Math.round(c.getGreen()*255) << 8) | (int)Math.round(c.getBlue()*255);
+    }
+
+    private static int colorValue(Color c) {
+           // Convert a color to the value that is stored for it in the grid.  A null
+           // color is 0.  Fully transparent black would also be 0, so it is stored
+           // as 1, which is fully transparent too and looks the same.
+        if (c == null)
+            return 0;
+        int argb = argb(c);
+        return (argb == 0)? 1 : argb;
+    }
+
+    private static int rgbToARGB(double red, double green, double blue) {
+           // Convert an opaque color with components in the range 0.0 to 1.0 to an
+           // int, in the same way as argb(Color.color(red,green,blue)).
+        return 0xFF000000 | ((int)Math.round(red*255) << 16)
+                | ((int)Math.round(green*255) << 8) | (int)Math.round(blue*255);
+    }
+
+    private static int hsbToARGB(double hue, double saturation, double brightness) {
+           // Convert an opaque color given by hue, saturation, and brightness to an
+           // int, in the same way as argb(Color.hsb(hue,saturation,brightness)).
+        if (saturation == 0)
+            return rgbToARGB(brightness,brightness,brightness);
+        double h = (((hue % 360) + 360) % 360) / 360;
+        h = (h - Math.floor(h)) * 6;
+        double f = h - Math.floor(h);
+        double p = brightness * (1 - saturation);
+        double q = brightness * (1 - saturation * f);
+        double t = brightness * (1 - saturation * (1 - f));
+        switch ((int)h) {
+        case 0:  return rgbToARGB(brightness,t,p);
+        case 1:  return rgbToARGB(q,brightness,p);
+        case 2:  return rgbToARGB(p,brightness,t);
+        case 3:  return rgbToARGB(p,q,brightness);
+        case 4:  return rgbToARGB(t,p,brightness);
+        default: return rgbToARGB(brightness,p,q);
+        }
+    }
+
+    private static Color toColor(int argb) {
+           // Convert an int with 8 bits each of alpha, red, green, and blue to a color.
+        return Color.rgb((argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF, (argb >>> 24) / 255.0);
+    }
+
+
+    // copy of the color data, made by copyColorData()
+
+    private static class ColorData {
+        int rows, columns;
+        int[] colors;
+        Color defaultColor, groutingColor;
+        boolean alwaysDrawGrouting, use3D;
+    }
+
+
+    // cache of pre-rendered 3D squares
+
+    private static class Tile {
+           // A 3D square of one color and size, rendered once.  The pixels are
+           // used for drawing into the pixel buffer; the image, which is only
+           // made when it is first needed, for drawing with the graphics context.
+        final int width, height;
+        final int[] pixels;
+        private WritableImage image;
+
+        Tile(Color color, int width, int height) {
+               // Renders the square:  a flat fill whose brightness is kept between
+               // 0.2 and 0.8, with a lighter top and left edge and a darker bottom
+               // and right edge.
+            this.width = width;
+            this.height = height;
+            pixels = new int[width*height];
+            double h = color.getHue();
+            double b = color.getBrightness();
+            double s = color.getSaturation();
+            int fill = argb(color);
+            if (b > 0.8) {
+                b = 0.8;
+                fill = argb(Color.hsb(h,s,b));
+            }
+            else if (b < 0.2) {
+                b = 0.2;
+                fill = argb(Color.hsb(h,s,b));
+            }
+            Arrays.fill(pixels, fill);
+            int light = argb(Color.hsb(h,s,b+0.2));
+            int dark = argb(Color.hsb(h,s,b-0.2));
+            Arrays.fill(pixels, 0, width, light);
+            for (int row = 0; row < height; row++)
+                pixels[row*width] = light;
+            for (int row = 1; row < height; row++)
+                pixels[row*width + width-1] = dark;
+            Arrays.fill(pixels, (height-1)*width + 1, height*width, dark);
+        }
+
+        WritableImage getImage() {
+            if (image == null) {
+                image = new WritableImage(width, height);
+                image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(),
+                        pixels, 0, width);
+            }
+            return image;
+        }
+    }
+
+    private static class TileCache extends LinkedHashMap<Long,Tile> {
+           // The most recently used tiles, keyed by the ARGB value of the color
+           // in the high 32 bits and the width and height in the low 32 bits.
+           // A mosaic usually has only a few colors and at most a few sizes of
+           // square, so a small cache is enough; the least recently used tile is
+           // dropped when it is full.  The last tile that was found is checked
+           // first, since a run of squares often has the same color.
+        private static final long serialVersionUID = 1L;
+        static final int CAPACITY = 256;
+        private long lastKey;
+        private Tile lastTile;
+
+        TileCache() {
+            super(16, 0.75f, true);
+        }
+
+        Tile get(int color, int width, int height) {
+            long key = ((long)color << 32) | ((long)(width & 0xFFFF) << 16) | (height & 0xFFFF);
+            if (lastTile != null && key == lastKey)
+                return lastTile;
+            Tile tile = get(key);
+            if (tile == null) {
+                tile = new Tile(toColor(color),width,height);
+                put(key,tile);
+            }
+            lastKey = key;
+            lastTile = tile;
+            return tile;
+        }
+
+        protected boolean removeEldestEntry(Map.Entry<Long,Tile> eldest) {
+            return size() > CAPACITY;
+        }
+    }
+
 
 
 } // end class MosaicCanvas
@@ -0,0 +1,315 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A LifeBoard that keeps its cells outside the Java heap, so that a board of billions of cells does not need a huge
+ * heap, and the garbage collector never has to look at it. The cells are packed 64 to a long, in the same layout as
+ * a PackedLifeBoard, and each generation is computed with the same bitwise kernels: PackedLifeBoard.evolve() for
+ * Conway's rule, and LifeRule.nextWord() for any other rule.
+ *
+ * The memory comes either from direct ByteBuffers or from a file that is mapped into memory. With a file, the board
+ * can even be bigger than the computer's memory, since the operating system pages parts of it in and out as needed;
+ * the file is only scratch space for the two generations, and its contents are not meant to be read back. ( Use a
+ * LifeSnapshot to save a board. ) A single buffer can't hold more than 2 GB, so the rows are divided into chunks of
+ * at most CHUNK_SIZE bytes, each with its own buffer. Note that direct buffers count against the JVM's limit on direct
+ * memory, which by default is the same as the maximum heap size; mapped files don't.
+ *
+ * To compute a row of the next generation, the rows above, at and below it are copied into three small arrays on the
+ * heap, and the new row is computed into a fourth array and copied out. Each row is copied in only once, since the
+ * arrays are rotated as the computation moves down the board, so the inner loop runs over ordinary arrays at the same
+ * speed as a PackedLifeBoard's.
+ */
+public class OffHeapLifeBoard implements LifeBoard {
+
+    /**
+     * The largest number of bytes in one chunk of rows.
+     */
+    public static final int CHUNK_SIZE = 1 << 30;
+
+    private final int rows;  // Number of rows on the board.
+    private final int columns;  // Number of columns on the board.
+    private final int wordsPerRow;  // Number of longs used to hold one row.
+    private final int lastBit;  // Position of the last column's bit in the last word of a row.
+    private final long lastWordMask;  // The bits of the last word in a row that are actually used.
+    private final int rowsPerChunk;  // Number of rows in each chunk, except perhaps the last.
+
+    private LongBuffer[] cells;  // The current generation, one buffer for each chunk of rows.
+    private LongBuffer[] next;  // Space for computing the next generation.
+
+    private final long[] above, here, below, result;  // Rows copied in and out while computing a generation.
+
+    private LifeRule rule = LifeRule.CONWAY;  // The rule that gives the next state of each cell.
+    private boolean hashing;  // Set to true by the first call to getHash(); after that, hash is kept up to date.
+    private long hash;  // The hash of the current generation, if hashing is true.
+
+    /**
+     * Create a board with the given number of rows and columns, in which every cell is dead, in direct buffers.
+     */
+    public OffHeapLifeBoard( int rows, int columns ) {
+        this( rows, columns, null );
+    }
+
+    /**
+     * Create a board with the given number of rows and columns, in which every cell is dead. If file is not null,
+     * the cells are kept in that file, which is created, or replaced if it already exists, and mapped into memory;
+     * otherwise, they are kept in direct buffers.
+     * @throws UncheckedIOException if the file can't be created or mapped.
+     */
+    public OffHeapLifeBoard( int rows, int columns, Path file ) {
+        if ( rows <= 0 || columns <= 0 )
+            throw new IllegalArgumentException( "Rows and columns must be greater than zero." );
+        this.rows = rows;
+        this.columns = columns;
+        wordsPerRow = ( columns + 63 ) >>> 6;
+        lastBit = ( columns - 1 ) & 63;
+        lastWordMask = -1L >>> ( 63 - lastBit );
+        rowsPerChunk = Math.max( 1, CHUNK_SIZE / ( wordsPerRow * 8 ) );
+        int chunks = ( rows + rowsPerChunk - 1 ) / rowsPerChunk;
+        cells = new LongBuffer[ chunks ];
+        next = new LongBuffer[ chunks ];
+        if ( file == null ) {
+            for ( int k = 0; k < chunks; k++ ) {
+                cells[k] = ByteBuffer.allocateDirect( chunkBytes( k ) ).order( ByteOrder.nativeOrder() ).asLongBuffer();
+                next[k] = ByteBuffer.allocateDirect( chunkBytes( k ) ).order( ByteOrder.nativeOrder() ).asLongBuffer();
+            }
+        }
+        else {
+            long generationBytes = (long) rows * wordsPerRow * 8;
+            try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                          StandardOpenOption.WRITE,
+                                                          StandardOpenOption.TRUNCATE_EXISTING ) ) {
+                for ( int k = 0; k < chunks; k++ ) {
+                    long start = (long) k * rowsPerChunk * wordsPerRow * 8;
+                    cells[k] = channel.map( FileChannel.MapMode.READ_WRITE, start, chunkBytes( k ) )
+                                      .order( ByteOrder.nativeOrder() ).asLongBuffer();
+                    next[k] = channel.map( FileChannel.MapMode.READ_WRITE, generationBytes + start, chunkBytes( k ) )
+                                     .order( ByteOrder.nativeOrder() ).asLongBuffer();
+                }
+            }
+            catch ( IOException e ) {
+                throw new UncheckedIOException( "Can't map the board file " + file, e );
+            }
+        }
+        above = new long[ wordsPerRow ];
+        here = new long[ wordsPerRow ];
+        below = new long[ wordsPerRow ];
+        result = new long[ wordsPerRow ];
+    }
+
+    /**
+     * Return the number of bytes in chunk k.
+     */
+    private int chunkBytes( int k ) {
+        int chunkRows = Math.min( rowsPerChunk, rows - k * rowsPerChunk );
+        return chunkRows * wordsPerRow * 8;
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    public int getColumnCount() {
+        return columns;
+    }
+
+    /**
+     * Return the number of longs used to hold each row of the board.
+     */
+    public int getWordsPerRow() {
+        return wordsPerRow;
+    }
+
+    public boolean isAlive( int row, int col ) {
+        int i = index( row, col );
+        return ( cells[ row / rowsPerChunk ].get( i ) & ( 1L << col ) ) != 0;
+    }
+
+    public void setAlive( int row, int col, boolean alive ) {
+        int i = index( row, col );
+        LongBuffer chunk = cells[ row / rowsPerChunk ];
+        long word = chunk.get( i );
+        if ( hashing && ( ( word & ( 1L << col ) ) != 0 ) != alive )
+            hash ^= LifeBoard.cellHash( row, col );
+        chunk.put( i, alive ? word | ( 1L << col ) : word & ~( 1L << col ) );
+    }
+
+    /**
+     * Make a run of cells in one row alive, setting up to 64 cells at a time with a mask.
+     */
+    public void setAliveRun( int row, int col, int length ) {
+        if ( length <= 0 )
+            return;
+        if ( row < 0 || row >= rows || col < 0 || length > columns - col )
+            throw new IndexOutOfBoundsException( "No cells at row " + row + ", columns " + col + " to "
+                                                 + ( (long) col + length - 1 ) );
+        LongBuffer chunk = cells[ row / rowsPerChunk ];
+        int base = ( row % rowsPerChunk ) * wordsPerRow;
+        int last = col + length - 1;
+        for ( int w = col >>> 6; w <= last >>> 6; w++ ) {
+            long mask = -1L;
+            if ( w == col >>> 6 )
+                mask &= -1L << col;
+            if ( w == last >>> 6 )
+                mask &= -1L >>> ( 63 - ( last & 63 ) );
+            long word = chunk.get( base + w );
+            if ( hashing )
+                hash ^= PackedLifeBoard.hashBits( row, w, mask & ~word );
+            chunk.put( base + w, word | mask );
+        }
+    }
+
+    public void clear() {
+        for ( LongBuffer chunk : cells ) {
+            for ( int i = 0; i < chunk.limit(); i++ )
+                chunk.put( i, 0 );
+        }
+        hash = 0;
+    }
+
+    public long getPopulation() {
+        long population = 0;
+        for ( LongBuffer chunk : cells ) {
+            for ( int i = 0; i < chunk.limit(); i++ )
+                population += Long.bitCount( chunk.get( i ) );
+        }
+        return population;
+    }
+
+    /**
+     * Return the hash of the board, as described in the LifeBoard interface. The first call looks at every living
+     * cell, and turns on the incremental updating of the hash in all later steps and edits, as in a PackedLifeBoard.
+     */
+    public long getHash() {
+        if ( ! hashing ) {
+            hash = 0;
+            for ( int r = 0; r < rows; r++ ) {
+                readRow( cells, r, here );
+                for ( int w = 0; w < wordsPerRow; w++ )
+                    hash ^= PackedLifeBoard.hashBits( r, w, here[w] );
+            }
+            hashing = true;
+        }
+        return hash;
+    }
+
+    /**
+     * Copy the words that hold the current generation into an array, which must have room for at least
+     * getRowCount() * getWordsPerRow() longs. The words are in the same layout as in a PackedLifeBoard.
+     */
+    public void copyCells( long[] dest ) {
+        int offset = 0;
+        for ( LongBuffer chunk : cells ) {
+            LongBuffer view = chunk.duplicate();
+            view.position( 0 );
+            view.get( dest, offset, chunk.limit() );
+            offset += chunk.limit();
+        }
+    }
+
+    public LifeRule getRule() {
+        return rule;
+    }
+
+    public void setRule( LifeRule rule ) {
+        this.rule = rule;
+    }
+
+    public void step() {
+        final int last = wordsPerRow - 1;
+        final LifeRule rule = this.rule;
+        final boolean conway = rule.isConway();
+        long[] above = this.above;
+        long[] here = this.here;
+        long[] below = this.below;
+        long hashChange = 0;
+        readRow( cells, rows - 1, above );
+        readRow( cells, 0, here );
+        for ( int r = 0; r < rows; r++ ) {
+            readRow( cells, r < rows - 1 ? r + 1 : 0, below );
+            for ( int w = 0; w <= last; w++ ) {
+                int left = w > 0 ? w - 1 : last;  // Words that hold the cells to the left and right of this word.
+                int right = w < last ? w + 1 : 0;
+                long n = above[w];
+                long c = here[w];
+                long s = below[w];
+                long nw = west( n, above[left], w );
+                long ne = east( n, above[right], w, last );
+                long cw = west( c, here[left], w );
+                long ce = east( c, here[right], w, last );
+                long sw = west( s, below[left], w );
+                long se = east( s, below[right], w, last );
+                long word = conway ? PackedLifeBoard.evolve( nw, n, ne, cw, c, ce, sw, s, se )
+                                   : rule.nextWord( nw, n, ne, cw, c, ce, sw, s, se );
+                if ( w == last )
+                    word &= lastWordMask;
+                result[w] = word;
+                if ( hashing && word != c )
+                    hashChange ^= PackedLifeBoard.hashBits( r, w, word ^ c );
+            }
+            writeRow( next, r, result );
+            long[] temp = above;  // The row that is no longer needed is reused for the next row below.
+            above = here;
+            here = below;
+            below = temp;
+        }
+        if ( hashing )
+            hash ^= hashChange;
+        LongBuffer[] temp = cells;
+        cells = next;
+        next = temp;
+    }
+
+    /**
+     * Given a word and the word that holds the cells to its left, return a word in which each bit holds the state of
+     * the left-hand neighbor of the corresponding cell.
+     */
+    private long west( long word, long leftWord, int w ) {
+        long carry = w > 0 ? leftWord >>> 63 : ( leftWord >>> lastBit ) & 1;
+        return ( word << 1 ) | carry;
+    }
+
+    /**
+     * Given a word and the word that holds the cells to its right, return a word in which each bit holds the state of
+     * the right-hand neighbor of the corresponding cell.
+     */
+    private long east( long word, long rightWord, int w, int last ) {
+        if ( w < last )
+            return ( word >>> 1 ) | ( rightWord << 63 );
+        else
+            return ( word >>> 1 ) | ( ( rightWord & 1 ) << lastBit );
+    }
+
+    /**
+     * Copy row r of a generation into an array.
+     */
+    private void readRow( LongBuffer[] generation, int r, long[] dest ) {
+        LongBuffer chunk = generation[ r / rowsPerChunk ];
+        chunk.position( ( r % rowsPerChunk ) * wordsPerRow );
+        chunk.get( dest, 0, wordsPerRow );
+    }
+
+    /**
+     * Copy an array into row r of a generation.
+     */
+    private void writeRow( LongBuffer[] generation, int r, long[] src ) {
+        LongBuffer chunk = generation[ r / rowsPerChunk ];
+        chunk.position( ( r % rowsPerChunk ) * wordsPerRow );
+        chunk.put( src, 0, wordsPerRow );
+    }
+
+    /**
+     * Return the index, within its chunk, of the word that holds a cell.
+     */
+    private int index( int row, int col ) {
+        if ( row < 0 || row >= rows || col < 0 || col >= columns )
+            throw new IndexOutOfBoundsException( "No cell at row " + row + ", column " + col );
+        return ( row % rowsPerChunk ) * wordsPerRow + ( col >>> 6 );
+    }
+
+}  // end class OffHeapLifeBoard.
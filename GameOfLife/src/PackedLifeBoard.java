@@ -0,0 +1,423 @@
+import java.util.Arrays;
+
+/**
+ * A LifeBoard that packs 64 cells into each long. Bit b of word w in a row holds the cell in column 64*w + b, and
+ * each row starts with a new word, so a board with C columns uses ( C + 63 ) / 64 words per row. Unused bits at the
+ * end of the last word in a row are always zero.
+ *
+ * Instead of counting the neighbors of one cell at a time, the next generation is computed for a whole word of 64
+ * cells at once. The eight neighbors of every cell in a word are lined up by shifting the words above, below and
+ * beside it, and the eight one-bit neighbor values are added with bitwise "adder" logic, so that the bits of the
+ * neighbor count end up in a few longs. The rules of the game are then applied to all 64 cells with a couple of
+ * bitwise operations. This uses 1/8 of the memory of a boolean array and no branches at all in the inner loop.
+ * Conway's rule has its own kernel, evolve(); any other rule is applied by the kernel that the LifeRule compiled for
+ * itself, LifeRule.nextWord(), which takes a few dozen more bitwise operations per word but is just as branch-free.
+ *
+ * Two arrays of words are kept. Each generation is computed from one into the other and then they are swapped, so
+ * stepping the board does not allocate any memory.
+ *
+ * The board is also divided into tiles of TILE_HEIGHT rows by one word ( TILE_WIDTH columns ), and the board keeps
+ * track of which tiles changed in the last generation. A tile can only change if it or one of its eight neighboring
+ * tiles changed in the previous generation, so all other tiles are skipped when computing a step. A skipped tile
+ * needs no copying either: since it did not change in the previous step, the array that receives the next generation
+ * already holds the same words for it as the current one. On a board that has mostly settled down into still lifes
+ * and blinkers, only the few tiles around the remaining activity are computed. The changed tiles can also be used by
+ * a display, to redraw just the parts of the board that changed.
+ *
+ * The first call to getHash() computes the hash of the board from scratch. After that, the hash is kept up to date
+ * incrementally: setAlive() and the other editing methods XOR in the hashes of the cells that they change, and
+ * stepRows() XORs in the hashes of the cells that differ between each word and its next generation, which it finds by
+ * XORing the two words. Words that did not change cost nothing, so on a settled board the hash is almost free.
+ */
+public class PackedLifeBoard implements LifeBoard {
+
+    public static final int TILE_HEIGHT = 32;  // Number of rows in a tile.
+    public static final int TILE_WIDTH = 64;  // Number of columns in a tile ( that is, one word ).
+
+    private final int rows;  // Number of rows on the board.
+    private final int columns;  // Number of columns on the board.
+    private final int wordsPerRow;  // Number of longs used to hold one row.
+    private final int lastBit;  // Position of the last column's bit in the last word of a row.
+    private final long lastWordMask;  // The bits of the last word in a row that are actually used.
+
+    private long[] cells;  // The current generation, wordsPerRow words for each row.
+    private long[] next;  // Space for computing the next generation.
+
+    private final int tileRows;  // Number of rows of tiles. There are wordsPerRow columns of tiles.
+    private boolean[] changed;  // changed[t] is true if tile t changed in the last generation, or was edited since.
+    private boolean[] nextChanged;  // Records which tiles change while the next generation is being computed.
+    private final boolean[] active;  // active[t] is true if tile t has to be computed in the current step.
+
+    private LifeRule rule = LifeRule.CONWAY;  // The rule that gives the next state of each cell.
+    private boolean conway = true;  // True if rule is Conway's rule, which uses the evolve() kernel.
+
+    private boolean hashing;  // Set to true by the first call to getHash(); after that, hash is kept up to date.
+    private long hash;  // The hash of the current generation, if hashing is true.
+
+    private long steps;  // Number of generations computed by step().
+    private long edits;  // Number of calls to the methods that edit the cells.
+
+    /**
+     * Create a board with the given number of rows and columns, in which every cell is dead.
+     */
+    public PackedLifeBoard( int rows, int columns ) {
+        if ( rows <= 0 || columns <= 0 )
+            throw new IllegalArgumentException( "Rows and columns must be greater than zero." );
+        this.rows = rows;
+        this.columns = columns;
+        wordsPerRow = ( columns + 63 ) >>> 6;
+        lastBit = ( columns - 1 ) & 63;
+        lastWordMask = -1L >>> ( 63 - lastBit );
+        cells = new long[ rows * wordsPerRow ];
+        next = new long[ rows * wordsPerRow ];
+        tileRows = ( rows + TILE_HEIGHT - 1 ) / TILE_HEIGHT;
+        changed = new boolean[ tileRows * wordsPerRow ];
+        nextChanged = new boolean[ tileRows * wordsPerRow ];
+        active = new boolean[ tileRows * wordsPerRow ];
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    public int getColumnCount() {
+        return columns;
+    }
+
+    /**
+     * Return the number of longs used to hold each row of the board.
+     */
+    public int getWordsPerRow() {
+        return wordsPerRow;
+    }
+
+    public long getPopulation() {
+        long population = 0;
+        for ( long word : cells )
+            population += Long.bitCount( word );
+        return population;
+    }
+
+    /**
+     * Return the hash of the board, as described in the LifeBoard interface. The first call looks at every living
+     * cell, and turns on the incremental updating of the hash in all later steps and edits.
+     */
+    public long getHash() {
+        if ( ! hashing ) {
+            hash = 0;
+            for ( int r = 0; r < rows; r++ ) {
+                for ( int w = 0; w < wordsPerRow; w++ )
+                    hash ^= hashBits( r, w, cells[ r * wordsPerRow + w ] );
+            }
+            hashing = true;
+        }
+        return hash;
+    }
+
+    /**
+     * Copy the words that hold the current generation into an array, which must have room for at least
+     * getRowCount() * getWordsPerRow() longs. The words are in the layout described above, row by row.
+     */
+    public void copyCells( long[] dest ) {
+        System.arraycopy( cells, 0, dest, 0, cells.length );
+    }
+
+    /**
+     * Return one word of the current generation: word number "word" of the given row, in the layout described above.
+     */
+    public long getWord( int row, int word ) {
+        return cells[ row * wordsPerRow + word ];
+    }
+
+    /**
+     * Copy the getWordsPerRow() words that hold one row of the current generation into an array, starting at index
+     * offset.
+     */
+    public void copyRow( int row, long[] dest, int offset ) {
+        System.arraycopy( cells, row * wordsPerRow, dest, offset, wordsPerRow );
+    }
+
+    /**
+     * Replace one row of the current generation with getWordsPerRow() words from an array, starting at index offset,
+     * in the layout described above. Bits past the last column are ignored. Only tiles in which some word actually
+     * changes are marked as changed, so setting a row to the cells it already holds costs the next step nothing.
+     */
+    public void setRow( int row, long[] src, int offset ) {
+        if ( row < 0 || row >= rows )
+            throw new IndexOutOfBoundsException( "No row " + row );
+        edits++;
+        int base = row * wordsPerRow;
+        int tileBase = ( row / TILE_HEIGHT ) * wordsPerRow;
+        for ( int w = 0; w < wordsPerRow; w++ ) {
+            long word = w == wordsPerRow - 1 ? src[offset + w] & lastWordMask : src[offset + w];
+            long difference = word ^ cells[base + w];
+            if ( difference != 0 ) {
+                if ( hashing )
+                    hash ^= hashBits( row, w, difference );
+                cells[base + w] = word;
+                changed[tileBase + w] = true;
+            }
+        }
+    }
+
+    public boolean isAlive( int row, int col ) {
+        return ( cells[ row * wordsPerRow + ( col >>> 6 ) ] & ( 1L << col ) ) != 0;
+    }
+
+    public void setAlive( int row, int col, boolean alive ) {
+        if ( row < 0 || row >= rows || col < 0 || col >= columns )
+            throw new IndexOutOfBoundsException( "No cell at row " + row + ", column " + col );
+        edits++;
+        int i = row * wordsPerRow + ( col >>> 6 );
+        if ( hashing && ( ( cells[i] & ( 1L << col ) ) != 0 ) != alive )
+            hash ^= LifeBoard.cellHash( row, col );
+        if ( alive )
+            cells[i] |= 1L << col;  // Shift distances for longs are taken mod 64.
+        else
+            cells[i] &= ~( 1L << col );
+        changed[ ( row / TILE_HEIGHT ) * wordsPerRow + ( col >>> 6 ) ] = true;
+    }
+
+    /**
+     * Make a run of cells in one row alive, setting up to 64 cells at a time with a mask.
+     */
+    public void setAliveRun( int row, int col, int length ) {
+        if ( length <= 0 )
+            return;
+        if ( row < 0 || row >= rows || col < 0 || length > columns - col )
+            throw new IndexOutOfBoundsException( "No cells at row " + row + ", columns " + col + " to "
+                                                 + ( (long) col + length - 1 ) );
+        edits++;
+        int last = col + length - 1;
+        int base = row * wordsPerRow;
+        int tileBase = ( row / TILE_HEIGHT ) * wordsPerRow;
+        for ( int w = col >>> 6; w <= last >>> 6; w++ ) {
+            long mask = -1L;
+            if ( w == col >>> 6 )
+                mask &= -1L << col;
+            if ( w == last >>> 6 )
+                mask &= -1L >>> ( 63 - ( last & 63 ) );
+            if ( hashing )
+                hash ^= hashBits( row, w, mask & ~cells[base + w] );
+            cells[base + w] |= mask;
+            changed[tileBase + w] = true;
+        }
+    }
+
+    public void clear() {
+        edits++;
+        Arrays.fill( cells, 0 );
+        Arrays.fill( changed, true );
+        hash = 0;
+    }
+
+    public LifeRule getRule() {
+        return rule;
+    }
+
+    /**
+     * Set the rule. Every tile is marked as changed, since tiles that were settled under the old rule may not be
+     * settled under the new one.
+     */
+    public void setRule( LifeRule rule ) {
+        this.rule = rule;
+        conway = rule.isConway();
+        Arrays.fill( changed, true );
+    }
+
+    public void step() {
+        steps++;
+        findActiveTiles();
+        Arrays.fill( nextChanged, false );
+        long hashChange = computeGeneration();
+        if ( hashing )
+            hash ^= hashChange;
+        long[] temp = cells;
+        cells = next;
+        next = temp;
+        boolean[] tempChanged = changed;
+        changed = nextChanged;
+        nextChanged = tempChanged;
+    }
+
+    /**
+     * Return the number of rows of tiles. Tile row t covers board rows t*TILE_HEIGHT through ( t+1 )*TILE_HEIGHT - 1,
+     * except that the last tile row stops at the bottom of the board.
+     */
+    public int getTileRowCount() {
+        return tileRows;
+    }
+
+    /**
+     * Return the number of columns of tiles. Tile column t covers board columns t*TILE_WIDTH through
+     * ( t+1 )*TILE_WIDTH - 1, except that the last tile column stops at the right edge of the board.
+     */
+    public int getTileColumnCount() {
+        return wordsPerRow;
+    }
+
+    /**
+     * Return true if any cell in the specified tile changed in the last generation, or was changed by setAlive() or
+     * clear() since then.
+     */
+    public boolean isTileChanged( int tileRow, int tileCol ) {
+        return changed[ tileRow * wordsPerRow + tileCol ];
+    }
+
+    /**
+     * Return the number of generations that step() has computed since the board was created.
+     */
+    public long getStepCount() {
+        return steps;
+    }
+
+    /**
+     * Return the number of calls to setAlive(), setAliveRun(), setRow() and clear() since the board was created. If
+     * neither this nor getStepCount() has changed, the cells have not changed. If only getStepCount() has gone up, by
+     * one, the cells that differ from before are all in the tiles for which isTileChanged() returns true.
+     */
+    public long getEditCount() {
+        return edits;
+    }
+
+    /**
+     * Mark as active every tile that changed in the last generation, along with its neighbors, wrapping around the
+     * edges of the board.
+     */
+    private void findActiveTiles() {
+        final int lastRow = tileRows - 1;
+        final int last = wordsPerRow - 1;
+        for ( int t = 0; t <= lastRow; t++ ) {
+            int above = ( t > 0 ? t - 1 : lastRow ) * wordsPerRow;
+            int here = t * wordsPerRow;
+            int below = ( t < lastRow ? t + 1 : 0 ) * wordsPerRow;
+            for ( int w = 0; w <= last; w++ ) {
+                int left = w > 0 ? w - 1 : last;
+                int right = w < last ? w + 1 : 0;
+                active[here + w] = changed[above + left] || changed[above + w] || changed[above + right]
+                                   || changed[here + left] || changed[here + w] || changed[here + right]
+                                   || changed[below + left] || changed[below + w] || changed[below + right];
+            }
+        }
+    }
+
+    /**
+     * Compute the whole next generation into "next". Subclasses can override this to divide the work among several
+     * threads by calling stepRows() for separate bands of rows. Each call reads only the current generation and
+     * writes only its own rows of the next one, so bands can be computed in any order, or at the same time. Returns
+     * the XOR of the values returned by stepRows().
+     */
+    protected long computeGeneration() {
+        return stepRows( 0, rows );
+    }
+
+    /**
+     * Compute the next generation for rows fromRow through toRow - 1, reading the current generation from "cells" and
+     * writing the new one into "next". Words in inactive tiles are skipped, and tiles in which some word changes are
+     * recorded in "nextChanged". If several threads compute different bands of rows, their bands should start at a
+     * multiple of TILE_HEIGHT, so that they don't share tiles. If the hash of the board is being kept up to date, the
+     * return value is the XOR of the hashes of all the cells in these rows that change; otherwise, it is zero.
+     */
+    protected final long stepRows( int fromRow, int toRow ) {
+        final int last = wordsPerRow - 1;
+        final LifeRule rule = this.rule;
+        final boolean conway = this.conway;
+        long hashChange = 0;
+        for ( int r = fromRow; r < toRow; r++ ) {
+            int above = ( r > 0 ? r - 1 : rows - 1 ) * wordsPerRow;  // Index of the first word in the row above.
+            int here = r * wordsPerRow;
+            int below = ( r < rows - 1 ? r + 1 : 0 ) * wordsPerRow;
+            int tiles = ( r / TILE_HEIGHT ) * wordsPerRow;  // Index of the first tile in this row.
+            for ( int w = 0; w <= last; w++ ) {
+                if ( ! active[tiles + w] )
+                    continue;
+                int left = w > 0 ? w - 1 : last;  // Words that hold the cells to the left and right of this word.
+                int right = w < last ? w + 1 : 0;
+                long n = cells[above + w];
+                long c = cells[here + w];
+                long s = cells[below + w];
+                long nw = west( n, cells[above + left], w );
+                long ne = east( n, cells[above + right], w, last );
+                long cw = west( c, cells[here + left], w );
+                long ce = east( c, cells[here + right], w, last );
+                long sw = west( s, cells[below + left], w );
+                long se = east( s, cells[below + right], w, last );
+                long result = conway ? evolve( nw, n, ne, cw, c, ce, sw, s, se )
+                                     : rule.nextWord( nw, n, ne, cw, c, ce, sw, s, se );
+                if ( w == last )
+                    result &= lastWordMask;
+                next[here + w] = result;
+                if ( result != c ) {
+                    nextChanged[tiles + w] = true;
+                    if ( hashing )
+                        hashChange ^= hashBits( r, w, result ^ c );
+                }
+            }
+        }
+        return hashChange;
+    }
+
+    /**
+     * Return the XOR of the hashes of the cells in the given row and word whose bits are set in the given bits.
+     */
+    static long hashBits( int row, int word, long bits ) {
+        long h = 0;
+        while ( bits != 0 ) {
+            h ^= LifeBoard.cellHash( row, word * 64 + Long.numberOfTrailingZeros( bits ) );
+            bits &= bits - 1;  // Clear the lowest bit that is set.
+        }
+        return h;
+    }
+
+    /**
+     * Given a word and the word that holds the cells to its left, return a word in which each bit holds the state of
+     * the left-hand neighbor of the corresponding cell.
+     */
+    private long west( long word, long leftWord, int w ) {
+        long carry = w > 0 ? leftWord >>> 63 : ( leftWord >>> lastBit ) & 1;
+        return ( word << 1 ) | carry;
+    }
+
+    /**
+     * Given a word and the word that holds the cells to its right, return a word in which each bit holds the state of
+     * the right-hand neighbor of the corresponding cell. In the last word of a row, the neighbor of the last column is
+     * column zero, which is not necessarily at the top bit.
+     */
+    private long east( long word, long rightWord, int w, int last ) {
+        if ( w < last )
+            return ( word >>> 1 ) | ( rightWord << 63 );
+        else
+            return ( word >>> 1 ) | ( ( rightWord & 1 ) << lastBit );
+    }
+
+    /**
+     * Apply Conway's rule to 64 cells at once. The parameters give, for each of the 64 cells, the state of its
+     * eight neighbors ( nw, n, ne, w, e, sw, s, se ) and of the cell itself ( c ). The neighbors are added with full
+     * adders, giving the "ones" and "twos" bits of the count, plus a "fours" bit that is set wherever the count is 4
+     * or more. A cell is alive in the next generation if the count is 3, or if the count is 2 and the cell is alive
+     * now.
+     */
+    static long evolve( long nw, long n, long ne, long w, long c, long e, long sw, long s, long se ) {
+
+        // Add the three cells above, the two beside, and the three below. Each sum has a "ones" and a "twos" bit.
+        long aboveOnes = nw ^ n ^ ne;
+        long aboveTwos = ( nw & n ) | ( ne & ( nw ^ n ) );
+        long besideOnes = w ^ e;
+        long besideTwos = w & e;
+        long belowOnes = sw ^ s ^ se;
+        long belowTwos = ( sw & s ) | ( se & ( sw ^ s ) );
+
+        // Add the three "ones" bits.
+        long ones = aboveOnes ^ besideOnes ^ belowOnes;
+        long carry = ( aboveOnes & besideOnes ) | ( belowOnes & ( aboveOnes ^ besideOnes ) );
+
+        // Add the four "twos" bits, counting in units of two.
+        long twosSum = aboveTwos ^ besideTwos ^ belowTwos;
+        long twosCarry = ( aboveTwos & besideTwos ) | ( belowTwos & ( aboveTwos ^ besideTwos ) );
+        long twos = twosSum ^ carry;
+        long fours = twosCarry | ( twosSum & carry );
+
+        return twos & ~fours & ( ones | c );
+    }
+
+}  // end class PackedLifeBoard.
@@ -0,0 +1,120 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A PackedLifeBoard that computes each generation on several threads. The rows of the board are split into bands,
+ * and the bands are computed by the threads of a ForkJoinPool. Every band reads the current generation, including the
+ * rows just above and below it ( wrapping around at the top and bottom of the board ), and writes only its own rows
+ * of the next generation, so the result is exactly the same as stepping the board on a single thread. Bands always
+ * start on a tile boundary, so each tile is computed by only one thread.
+ *
+ * Boards that are created without saying how many threads to use all share one pool, so creating many of them does
+ * not create many threads. A board that is given a number of threads has a pool of its own, and close() should be
+ * called when it is no longer needed, to end those threads.
+ */
+public class ParallelLifeBoard extends PackedLifeBoard implements AutoCloseable {
+
+    private static final int MIN_BAND_WORDS = 4096;  // A band is not split if it has fewer words than this.
+
+    private static ForkJoinPool sharedPool;  // The pool used by boards that don't have their own, made when needed.
+
+    private final ForkJoinPool pool;  // The threads that compute the bands.
+    private final boolean ownsPool;  // True if the pool was made by this board, and is shut down by close().
+    private final int bandRows;  // A band with at most this many rows is computed without being split further.
+
+    /**
+     * Create a board with the given number of rows and columns, in which every cell is dead. The board uses a pool
+     * with one thread for each available processor, which is shared by all the boards that are created this way.
+     */
+    public ParallelLifeBoard( int rows, int columns ) {
+        this( rows, columns, sharedPool(), false );
+    }
+
+    /**
+     * Create a board with the given number of rows and columns, in which every cell is dead.
+     * The board has its own pool of threads, which are ended by close().
+     * @param threads the number of threads that compute each generation. This must be a positive number.
+     */
+    public ParallelLifeBoard( int rows, int columns, int threads ) {
+        this( rows, columns, new ForkJoinPool( threads ), true );
+    }
+
+    /**
+     * Create a board with the given number of rows and columns, in which every cell is dead. Generations are computed
+     * by the threads of the given pool, which can be shared with other boards.
+     */
+    public ParallelLifeBoard( int rows, int columns, ForkJoinPool pool ) {
+        this( rows, columns, pool, false );
+    }
+
+    private ParallelLifeBoard( int rows, int columns, ForkJoinPool pool, boolean ownsPool ) {
+        super( rows, columns );
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+
+        // Aim for about four bands per thread, so that a thread that finishes early can take work from the others,
+        // but don't make bands so small that splitting them costs more than computing them.
+        int minRows = Math.max( TILE_HEIGHT, MIN_BAND_WORDS / getWordsPerRow() );
+        bandRows = Math.max( minRows, rows / ( 4 * pool.getParallelism() ) );
+    }
+
+    /**
+     * Return the number of threads used to compute each generation.
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * End the threads of the board's pool, if the board made the pool itself. The board can't be stepped after that.
+     * A pool that was given to the constructor, or that is shared by default, is left running.
+     */
+    public void close() {
+        if ( ownsPool )
+            pool.shutdown();
+    }
+
+    private static synchronized ForkJoinPool sharedPool() {
+        if ( sharedPool == null )
+            sharedPool = new ForkJoinPool( Runtime.getRuntime().availableProcessors() );
+        return sharedPool;
+    }
+
+    protected long computeGeneration() {
+        Band all = new Band( 0, getRowCount() );
+        pool.invoke( all );
+        return all.hashChange;
+    }
+
+    /**
+     * A task that computes the next generation for rows fromRow through toRow - 1, splitting itself in two at a tile
+     * boundary if it has too many rows.
+     */
+    private class Band extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int fromRow, toRow;
+        private long hashChange;  // The XOR of the values returned by stepRows() for this band.
+
+        Band( int fromRow, int toRow ) {
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        protected void compute() {
+            int middle = fromRow + ( ( toRow - fromRow ) / ( 2 * TILE_HEIGHT ) ) * TILE_HEIGHT;
+            if ( toRow - fromRow <= bandRows || middle == fromRow ) {
+                hashChange = stepRows( fromRow, toRow );
+            }
+            else {
+                Band top = new Band( fromRow, middle );
+                Band bottom = new Band( middle, toRow );
+                invokeAll( top, bottom );
+                hashChange = top.hashChange ^ bottom.hashChange;
+            }
+        }
+
+    }  // end nested class Band.
+
+}  // end class ParallelLifeBoard.
@@ -0,0 +1,387 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A LifeBoard whose cells are divided among several worker processes. The board is cut into horizontal bands of
+ * rows, or "shards", and each shard is computed by a separate Java process running LifeShardWorker, which keeps its
+ * band in a PackedLifeBoard. Before each generation, the workers swap the rows along the edges of their bands with
+ * their neighbors, directly over sockets on the loopback interface, so the only thing that passes between processes
+ * in each step is one row per edge of each band. This object is the coordinator: it starts the workers, passes edits
+ * and commands on to them, and collects their bands when the cells are needed, for example to show them on the screen
+ * or to write a snapshot. Like the other array boards, the board wraps around at its edges like a torus.
+ *
+ * Each worker has its own heap and its own garbage collector, so a board can be much bigger than would fit in one
+ * JVM, and options such as -Xmx or -XX:+UseNUMA can be given for the workers when the board is created. The same
+ * classes that run this program are used to start the workers, with the java command of the running JVM, so it all
+ * works on a single machine with no setup.
+ *
+ * Edits are sent to the workers without waiting for a reply, so filling the board one cell at a time is not slowed
+ * down by the round trips. Reading cells is different: the first call to isAlive() after a step fetches the whole
+ * band that holds the cell, and later calls in the same generation read that copy. That is fast for drawing the
+ * whole board, but the copies take as much memory as the bands themselves, so for a board that is too big for the
+ * coordinator's heap, use getPopulation() and getHash(), which the workers compute where the cells are.
+ *
+ * The workers exit when close() is called, or when the coordinator's JVM exits and their connections to it are
+ * closed. If a worker dies, the methods of this class throw an UncheckedIOException.
+ */
+public class ShardedLifeBoard implements LifeBoard, AutoCloseable {
+
+    private static final int CONNECT_TIMEOUT = 30000;  // Milliseconds to wait for the workers to start.
+
+    private final int rows;  // Number of rows on the board.
+    private final int columns;  // Number of columns on the board.
+    private final int wordsPerRow;  // Number of longs used to hold one row, as in a PackedLifeBoard.
+    private final int[] firstRows;  // Shard k holds rows firstRows[k] to firstRows[k+1] - 1.
+
+    private final Process[] workers;  // The worker processes, one for each shard.
+    private final Socket[] sockets;  // The connections to the workers.
+    private final DataInputStream[] ins;
+    private final DataOutputStream[] outs;
+    private final long[][] bands;  // bands[k] is a copy of the cells of shard k, or null if it has to be fetched.
+
+    private LifeRule rule = LifeRule.CONWAY;  // The rule that the workers follow.
+    private boolean closed;  // Set to true when close() is called.
+
+    /**
+     * Create a board with the given number of rows and columns, in which every cell is dead, divided among the given
+     * number of worker processes.
+     * @throws UncheckedIOException if the workers can't be started.
+     */
+    public ShardedLifeBoard( int rows, int columns, int shards ) {
+        this( rows, columns, shards, Collections.<String>emptyList() );
+    }
+
+    /**
+     * Create a board with the given number of rows and columns, in which every cell is dead, divided among the given
+     * number of worker processes. The workers are started with the given options for the java command, such as
+     * "-Xmx4g".
+     * @throws UncheckedIOException if the workers can't be started.
+     */
+    public ShardedLifeBoard( int rows, int columns, int shards, List<String> jvmOptions ) {
+        if ( rows <= 0 || columns <= 0 )
+            throw new IllegalArgumentException( "Rows and columns must be greater than zero." );
+        if ( shards <= 0 || shards > rows )
+            throw new IllegalArgumentException( "The number of shards must be from 1 to the number of rows." );
+        this.rows = rows;
+        this.columns = columns;
+        wordsPerRow = ( columns + 63 ) >>> 6;
+        firstRows = new int[ shards + 1 ];
+        for ( int k = 0; k <= shards; k++ )
+            firstRows[k] = (int) ( (long) rows * k / shards );
+        workers = new Process[ shards ];
+        sockets = new Socket[ shards ];
+        ins = new DataInputStream[ shards ];
+        outs = new DataOutputStream[ shards ];
+        bands = new long[ shards ][];
+        try {
+            startWorkers( jvmOptions );
+        }
+        catch ( IOException e ) {
+            close();
+            throw new UncheckedIOException( "Can't start the workers for a sharded board", e );
+        }
+    }
+
+    /**
+     * Start a process for each shard, wait for each of them to connect, and tell each one which band it holds and
+     * where to find the worker below it.
+     */
+    private void startWorkers( List<String> jvmOptions ) throws IOException {
+        int shards = workers.length;
+        try ( ServerSocket server = new ServerSocket( 0, shards, InetAddress.getLoopbackAddress() ) ) {
+            server.setSoTimeout( CONNECT_TIMEOUT );
+            String java = Paths.get( System.getProperty( "java.home" ), "bin", "java" ).toString();
+            for ( int k = 0; k < shards; k++ ) {
+                List<String> command = new ArrayList<>();
+                command.add( java );
+                command.addAll( jvmOptions );
+                command.add( "-cp" );
+                command.add( System.getProperty( "java.class.path" ) );
+                command.add( LifeShardWorker.class.getName() );
+                command.add( Integer.toString( server.getLocalPort() ) );
+                command.add( Integer.toString( k ) );
+                workers[k] = new ProcessBuilder( command ).redirectOutput( ProcessBuilder.Redirect.INHERIT )
+                                                          .redirectError( ProcessBuilder.Redirect.INHERIT ).start();
+            }
+            int[] haloPorts = new int[ shards ];
+            for ( int i = 0; i < shards; i++ ) {  // The workers can connect in any order.
+                Socket socket = server.accept();
+                socket.setTcpNoDelay( true );
+                DataInputStream in = new DataInputStream( new BufferedInputStream( socket.getInputStream() ) );
+                int k = in.readInt();
+                haloPorts[k] = in.readInt();
+                sockets[k] = socket;
+                ins[k] = in;
+                outs[k] = new DataOutputStream( new BufferedOutputStream( socket.getOutputStream() ) );
+            }
+            for ( int k = 0; k < shards; k++ ) {
+                outs[k].writeInt( shards );
+                outs[k].writeInt( firstRows[k] );
+                outs[k].writeInt( firstRows[k + 1] - firstRows[k] );
+                outs[k].writeInt( columns );
+                outs[k].writeUTF( rule.getNotation() );
+                outs[k].writeInt( haloPorts[ ( k + 1 ) % shards ] );
+                outs[k].flush();
+            }
+        }
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    public int getColumnCount() {
+        return columns;
+    }
+
+    /**
+     * Return the number of shards, which is the number of worker processes.
+     */
+    public int getShardCount() {
+        return workers.length;
+    }
+
+    public boolean isAlive( int row, int col ) {
+        checkCell( row, col );
+        int k = shardOf( row );
+        if ( bands[k] == null )
+            fetch( k );
+        return ( bands[k][ ( row - firstRows[k] ) * wordsPerRow + ( col >>> 6 ) ] & ( 1L << col ) ) != 0;
+    }
+
+    public void setAlive( int row, int col, boolean alive ) {
+        checkCell( row, col );
+        int k = shardOf( row );
+        try {
+            outs[k].writeByte( LifeShardWorker.SET_ALIVE );
+            outs[k].writeInt( row - firstRows[k] );
+            outs[k].writeInt( col );
+            outs[k].writeBoolean( alive );
+        }
+        catch ( IOException e ) {
+            throw lost( e );
+        }
+        if ( bands[k] != null ) {
+            int i = ( row - firstRows[k] ) * wordsPerRow + ( col >>> 6 );
+            if ( alive )
+                bands[k][i] |= 1L << col;
+            else
+                bands[k][i] &= ~( 1L << col );
+        }
+    }
+
+    /**
+     * Make a run of cells in one row alive. The whole run is sent to the worker as a single command.
+     */
+    public void setAliveRun( int row, int col, int length ) {
+        if ( length <= 0 )
+            return;
+        if ( row < 0 || row >= rows || col < 0 || length > columns - col )
+            throw new IndexOutOfBoundsException( "No cells at row " + row + ", columns " + col + " to "
+                                                 + ( (long) col + length - 1 ) );
+        int k = shardOf( row );
+        try {
+            outs[k].writeByte( LifeShardWorker.SET_RUN );
+            outs[k].writeInt( row - firstRows[k] );
+            outs[k].writeInt( col );
+            outs[k].writeInt( length );
+        }
+        catch ( IOException e ) {
+            throw lost( e );
+        }
+        bands[k] = null;
+    }
+
+    public void clear() {
+        sendToAll( LifeShardWorker.CLEAR );
+        for ( long[] band : bands ) {
+            if ( band != null )
+                Arrays.fill( band, 0 );
+        }
+    }
+
+    public LifeRule getRule() {
+        return rule;
+    }
+
+    public void setRule( LifeRule rule ) {
+        try {
+            for ( DataOutputStream out : outs ) {
+                out.writeByte( LifeShardWorker.RULE );
+                out.writeUTF( rule.getNotation() );
+            }
+        }
+        catch ( IOException e ) {
+            throw lost( e );
+        }
+        this.rule = rule;
+    }
+
+    /**
+     * Compute the next generation. All the workers are told to step, and this method returns when all of them have
+     * finished.
+     */
+    public void step() {
+        sendToAll( LifeShardWorker.STEP );
+        try {
+            for ( int k = 0; k < workers.length; k++ ) {
+                outs[k].flush();
+                bands[k] = null;
+            }
+            for ( DataInputStream in : ins ) {
+                if ( in.readByte() != LifeShardWorker.STEP )
+                    throw new IOException( "Unexpected reply from a worker" );
+            }
+        }
+        catch ( IOException e ) {
+            throw lost( e );
+        }
+    }
+
+    /**
+     * Return the number of living cells, which each worker counts in its own band.
+     */
+    public long getPopulation() {
+        long population = 0;
+        for ( long count : ask( LifeShardWorker.POPULATION ) )
+            population += count;
+        return population;
+    }
+
+    /**
+     * Return the hash of the board, as described in the LifeBoard interface, which each worker computes for its own
+     * band.
+     */
+    public long getHash() {
+        long hash = 0;
+        for ( long bandHash : ask( LifeShardWorker.HASH ) )
+            hash ^= bandHash;
+        return hash;
+    }
+
+    /**
+     * Copy the cells of the whole board into an array, in the same layout as PackedLifeBoard.copyCells(). The array
+     * must have room for at least getRowCount() * ( ( getColumnCount() + 63 ) / 64 ) longs.
+     */
+    public void copyCells( long[] dest ) {
+        for ( int k = 0; k < workers.length; k++ ) {
+            if ( bands[k] == null )
+                fetch( k );
+            System.arraycopy( bands[k], 0, dest, firstRows[k] * wordsPerRow, bands[k].length );
+        }
+    }
+
+    /**
+     * Tell the workers to exit, and close the connections to them. Workers that have not exited after a few seconds
+     * are killed. Once the board is closed, it can't be used any more.
+     */
+    public void close() {
+        if ( closed )
+            return;
+        closed = true;
+        for ( int k = 0; k < workers.length; k++ ) {
+            try {
+                if ( outs[k] != null ) {
+                    outs[k].writeByte( LifeShardWorker.QUIT );
+                    outs[k].flush();
+                }
+                if ( sockets[k] != null )
+                    sockets[k].close();
+            }
+            catch ( IOException e ) {
+                // The worker is gone already.
+            }
+        }
+        for ( Process worker : workers ) {
+            if ( worker == null )
+                continue;
+            try {
+                if ( ! worker.waitFor( 5, TimeUnit.SECONDS ) )
+                    worker.destroyForcibly();
+            }
+            catch ( InterruptedException e ) {
+                worker.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Fetch a copy of the cells of shard k from its worker into bands[k].
+     */
+    private void fetch( int k ) {
+        long[] band = new long[ ( firstRows[k + 1] - firstRows[k] ) * wordsPerRow ];
+        try {
+            outs[k].writeByte( LifeShardWorker.CELLS );
+            outs[k].flush();
+            LifeShardWorker.readRow( ins[k], band );
+        }
+        catch ( IOException e ) {
+            throw lost( e );
+        }
+        bands[k] = band;
+    }
+
+    /**
+     * Send a command that has a long as its reply to every worker, and return the replies.
+     */
+    private long[] ask( int command ) {
+        sendToAll( command );
+        long[] replies = new long[ workers.length ];
+        try {
+            flushAll();
+            for ( int k = 0; k < workers.length; k++ )
+                replies[k] = ins[k].readLong();
+        }
+        catch ( IOException e ) {
+            throw lost( e );
+        }
+        return replies;
+    }
+
+    private void sendToAll( int command ) {
+        try {
+            for ( DataOutputStream out : outs )
+                out.writeByte( command );
+        }
+        catch ( IOException e ) {
+            throw lost( e );
+        }
+    }
+
+    private void flushAll() throws IOException {
+        for ( DataOutputStream out : outs )
+            out.flush();
+    }
+
+    private UncheckedIOException lost( IOException e ) {
+        return new UncheckedIOException( "Lost the connection to a worker of a sharded board", e );
+    }
+
+    /**
+     * Return the number of the shard that holds a row.
+     */
+    private int shardOf( int row ) {
+        int k = Arrays.binarySearch( firstRows, row );
+        return k >= 0 ? k : -k - 2;
+    }
+
+    private void checkCell( int row, int col ) {
+        if ( row < 0 || row >= rows || col < 0 || col >= columns )
+            throw new IndexOutOfBoundsException( "No cell at row " + row + ", column " + col );
+    }
+
+}  // end class ShardedLifeBoard.
@@ -0,0 +1,664 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A command-line program that takes a census of the objects that random "soups" settle into. Each soup is a square
+ * of random cells in an otherwise empty, unbounded universe ( a SparseLifeBoard ), which is run until it settles
+ * into still lifes and oscillators. The objects that are left are then separated and counted, along with any
+ * spaceships, such as gliders, that flew away. Soups are run on all processors at once, each thread taking the next
+ * soup that has not been started, and the counts are written to a summary file every so often while the census runs,
+ * and when it ends. No JavaFX classes are used.
+ *
+ * Usage:  java SoupCensus [options]
+ *
+ *     --soups N          number of soups ( default 10000 )
+ *     --threads N        number of threads ( default: one per processor )
+ *     --soup-size N      each soup is N by N cells ( default 16 )
+ *     --density D        fraction of living cells in a soup ( default 0.5 )
+ *     --rule RULE        the rule, in B/S notation ( default B3/S23 ). Rules in which cells with no living neighbors
+ *                        come to life can't be used, since the universe is unbounded.
+ *     --seed N           seed for the soups; soup i of a census with seed N is always the same ( default random )
+ *     --max-generations N   a soup that has not settled after N generations is counted as unsettled ( default 20000 )
+ *     --output FILE      the summary file ( default census.txt )
+ *     --report-every N   rewrite the summary file, and print the progress, every N soups ( default 1000 )
+ *
+ * Each kind of object is named by a code in the style of the "apgcodes" that are used by other Life soup searches:
+ * "xs" and the number of cells for a still life, "xp" and the period for an oscillator, or "xq" and the period for a
+ * spaceship, then an underscore and the object's cells in extended Wechsler notation, in whichever orientation and
+ * phase gives the shortest code. For example, a block is xs4_33, a blinker is xp2_7 and a glider is xq4_153. Some
+ * common objects are also given their usual names in the summary.
+ *
+ * A settled soup is divided into objects by grouping cells that are within two cells of each other in some phase of
+ * the cycle. A group whose parts don't touch and never affect each other, such as the four blinkers of a traffic
+ * light, is counted as its parts; otherwise it is counted as one object, even if it is really two objects that
+ * touch without interacting. A group of cells that does not repeat when it is run by itself is counted as
+ * unidentified. While a soup is running, a spaceship that is beyond all the cells that are not spaceships, and
+ * heading away from them, is counted and removed, since otherwise the soup would never repeat.
+ */
+public class SoupCensus {
+
+    private static final int ESCAPE_CHECK_INTERVAL = 64;  // Generations between looks for escaping spaceships.
+    private static final int ESCAPE_MARGIN = 8;  // Distance a spaceship must be from other cells before removal.
+    private static final int MAX_SHIP_PERIOD = 32;  // Longest period of a spaceship that is recognized as escaping.
+    private static final int MAX_SHIP_CELLS = 64;  // Largest spaceship that is recognized as escaping.
+    private static final String CODE_DIGITS = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+    private final LifeRule rule;  // The rule that the soups follow.
+    private final int soupSize;  // The number of rows and columns of random cells in each soup.
+    private final double density;  // The probability that each cell of a soup is alive.
+    private final long seed;  // The seed from which the random cells of every soup are made.
+    private final int maxGenerations;  // The number of generations after which a soup is given up on.
+
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();  // Number of objects of each kind.
+    private final AtomicLong nextSoup = new AtomicLong();  // Number of the next soup to run.
+    private final AtomicLong soupsDone = new AtomicLong();  // Number of soups that have been finished.
+    private final LongAdder unsettled = new LongAdder();  // Number of soups that did not settle.
+    private final LongAdder unidentified = new LongAdder();  // Number of objects that could not be identified.
+    private final Map<String, String> names = new HashMap<>();  // Usual names for some objects, by code.
+
+    /**
+     * Create a census of soups under the given rule.
+     * @throws IllegalArgumentException if cells with no living neighbors come to life under the rule.
+     */
+    public SoupCensus( LifeRule rule, int soupSize, double density, long seed, int maxGenerations ) {
+        if ( rule.isBirthOnZero() )
+            throw new IllegalArgumentException( "A census can't use the rule " + rule.getNotation()
+                                                + ", in which empty space comes to life." );
+        this.rule = rule;
+        this.soupSize = soupSize;
+        this.density = density;
+        this.seed = seed;
+        this.maxGenerations = maxGenerations;
+        nameObject( "block", "oo", "oo" );
+        nameObject( "beehive", ".oo.", "o..o", ".oo." );
+        nameObject( "loaf", ".oo.", "o..o", ".o.o", "..o." );
+        nameObject( "boat", "oo.", "o.o", ".o." );
+        nameObject( "ship", "oo.", "o.o", ".oo" );
+        nameObject( "tub", ".o.", "o.o", ".o." );
+        nameObject( "pond", ".oo.", "o..o", "o..o", ".oo." );
+        nameObject( "long boat", "oo..", "o.o.", ".o.o", "..o." );
+        nameObject( "barge", ".o..", "o.o.", ".o.o", "..o." );
+        nameObject( "blinker", "ooo" );
+        nameObject( "toad", ".ooo", "ooo." );
+        nameObject( "beacon", "oo..", "oo..", "..oo", "..oo" );
+        nameObject( "glider", ".o.", "..o", "ooo" );
+        nameObject( "lightweight spaceship", ".o..o", "o....", "o...o", "oooo." );
+        nameObject( "pulsar", "..ooo...ooo..", ".............", "o....o.o....o", "o....o.o....o",
+                    "o....o.o....o", "..ooo...ooo..", ".............", "..ooo...ooo..", "o....o.o....o",
+                    "o....o.o....o", "o....o.o....o", ".............", "..ooo...ooo.." );
+    }
+
+    public static void main( String[] args ) {
+        long soups = 10000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int soupSize = 16;
+        double density = 0.5;
+        LifeRule rule = LifeRule.CONWAY;
+        long seed = new SplittableRandom().nextLong();
+        int maxGenerations = 20000;
+        String output = "census.txt";
+        long reportEvery = 1000;
+
+        try {
+            for ( int i = 0; i < args.length; i++ ) {
+                String option = args[i];
+                if ( i + 1 >= args.length )
+                    throw new IllegalArgumentException( "Missing value for " + option );
+                String value = args[++i];
+                switch ( option ) {
+                    case "--soups":
+                        soups = Long.parseLong( value );
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt( value );
+                        break;
+                    case "--soup-size":
+                        soupSize = Integer.parseInt( value );
+                        break;
+                    case "--density":
+                        density = Double.parseDouble( value );
+                        break;
+                    case "--rule":
+                        rule = LifeRule.parse( value );
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong( value );
+                        break;
+                    case "--max-generations":
+                        maxGenerations = Integer.parseInt( value );
+                        break;
+                    case "--output":
+                        output = value;
+                        break;
+                    case "--report-every":
+                        reportEvery = Long.parseLong( value );
+                        break;
+                    default:
+                        throw new IllegalArgumentException( "Unknown option " + option );
+                }
+            }
+            if ( soups < 0 || threads <= 0 || soupSize <= 0 || maxGenerations <= 0 || reportEvery <= 0 )
+                throw new IllegalArgumentException( "The numbers of soups, threads, generations and the soup size must"
+                                                    + " be greater than zero." );
+        }
+        catch ( IllegalArgumentException e ) {  // Also catches NumberFormatException.
+            System.err.println( e.getMessage() );
+            System.err.println( "Usage: java SoupCensus [--soups N] [--threads N] [--soup-size N] [--density D]" );
+            System.err.println( "           [--rule RULE] [--seed N] [--max-generations N]" );
+            System.err.println( "           [--output FILE] [--report-every N]" );
+            System.exit( 1 );
+            return;
+        }
+
+        SoupCensus census;
+        try {
+            census = new SoupCensus( rule, soupSize, density, seed, maxGenerations );
+        }
+        catch ( IllegalArgumentException e ) {
+            System.err.println( e.getMessage() );
+            System.exit( 1 );
+            return;
+        }
+        System.out.printf( "census of %d soups, %d x %d at density %s, rule %s, seed %d, %d threads%n",
+                           soups, soupSize, soupSize, density, rule.getNotation(), seed, threads );
+        try {
+            census.run( soups, threads, Paths.get( output ), reportEvery );
+        }
+        catch ( IOException e ) {
+            System.err.println( "Can't write " + output + ": " + e.getMessage() );
+            System.exit( 1 );
+        }
+    }
+
+    /**
+     * Run the given number of soups on the given number of threads, and write the summary file every reportEvery
+     * soups and at the end.
+     */
+    public void run( long soups, int threads, Path summary, long reportEvery ) throws IOException {
+        long startTime = System.nanoTime();
+        IOException[] failure = new IOException[ 1 ];  // The first error in writing the summary, from any thread.
+        Runnable worker = () -> {
+            SparseLifeBoard board = new SparseLifeBoard( soupSize, soupSize );
+            board.setRule( rule );
+            CycleDetector detector = new CycleDetector();
+            long soup;
+            while ( ( soup = nextSoup.getAndIncrement() ) < soups ) {
+                runSoup( soup, board, detector );
+                long done = soupsDone.incrementAndGet();
+                if ( done % reportEvery == 0 && done < soups ) {
+                    try {
+                        report( summary, done, System.nanoTime() - startTime, threads );
+                    }
+                    catch ( IOException e ) {
+                        synchronized ( failure ) {
+                            if ( failure[0] == null )
+                                failure[0] = e;
+                        }
+                    }
+                }
+            }
+        };
+        Thread[] workers = new Thread[ threads ];
+        for ( int i = 0; i < threads; i++ ) {
+            workers[i] = new Thread( worker, "census " + i );
+            workers[i].start();
+        }
+        for ( Thread thread : workers ) {
+            try {
+                thread.join();
+            }
+            catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        synchronized ( failure ) {
+            if ( failure[0] != null )
+                throw failure[0];
+        }
+        report( summary, soupsDone.get(), System.nanoTime() - startTime, threads );
+    }
+
+    /**
+     * Print the progress of the census, and rewrite the summary file. The file is written to a temporary file in the
+     * same directory, which then replaces it, so a program that reads the summary while the census is running always
+     * sees a complete file.
+     */
+    private synchronized void report( Path summary, long done, long nanos, int threads ) throws IOException {
+        double seconds = nanos / 1e9;
+        List<Map.Entry<String, LongAdder>> objects = new ArrayList<>( counts.entrySet() );
+        objects.sort( ( a, b ) -> Long.compare( b.getValue().sum(), a.getValue().sum() ) );
+        long total = 0;
+        for ( Map.Entry<String, LongAdder> object : objects )
+            total += object.getValue().sum();
+
+        Path temp = summary.resolveSibling( summary.getFileName() + ".tmp" );
+        try ( PrintWriter out = new PrintWriter( Files.newBufferedWriter( temp, StandardCharsets.UTF_8 ) ) ) {
+            out.printf( "# Soup census, rule %s, %d x %d soups at density %s, seed %d%n",
+                        rule.getNotation(), soupSize, soupSize, density, seed );
+            out.printf( "# %d soups in %.1f seconds on %d threads: %.1f soups/second%n",
+                        done, seconds, threads, done / seconds );
+            out.printf( "# %d objects; %d unidentified objects; %d soups did not settle in %d generations%n",
+                        total, unidentified.sum(), unsettled.sum(), maxGenerations );
+            for ( Map.Entry<String, LongAdder> object : objects ) {
+                String name = names.get( object.getKey() );
+                out.printf( "%-40s %12d%s%n", object.getKey(), object.getValue().sum(),
+                            name == null ? "" : "  " + name );
+            }
+        }
+        Files.move( temp, summary, StandardCopyOption.REPLACE_EXISTING );
+        System.out.printf( "%d soups, %.1f soups/second, %d objects%n", done, done / seconds, total );
+    }
+
+    /**
+     * Run one soup until it settles or runs out of generations, and count what it leaves. Each thread uses the same
+     * board and detector for all its soups. Clearing the board gives back the space that the last soup needed, so a
+     * big soup doesn't slow down the soups that come after it on the same thread.
+     */
+    private void runSoup( long soup, SparseLifeBoard board, CycleDetector detector ) {
+        board.clear();
+        detector.reset();
+        SplittableRandom random = new SplittableRandom( seed ^ ( soup * 0x9E3779B97F4A7C15L ) );
+        for ( int r = 0; r < soupSize; r++ ) {
+            for ( int c = 0; c < soupSize; c++ ) {
+                if ( random.nextDouble() < density )
+                    board.setAlive( r, c, true );
+            }
+        }
+        for ( int g = 1; g <= maxGenerations; g++ ) {
+            board.step();
+            if ( g % ESCAPE_CHECK_INTERVAL == 0 && removeEscapingShips( board ) )
+                detector.reset();  // The earlier generations had cells that are gone now.
+            if ( detector.check( board.getHash(), g ) > 0 ) {
+                countObjects( board, (int) detector.getPeriod() );
+                return;
+            }
+        }
+        unsettled.increment();
+    }
+
+    /**
+     * Divide a board that repeats with the given period into objects, and count each of them. The objects are found
+     * from the cells that are alive in any generation of the cycle, so the phases of an oscillator are kept together.
+     */
+    private void countObjects( SparseLifeBoard board, int period ) {
+        long[] current = board.getLivingCells();
+        SparseLifeBoard.CellMap everAlive = new SparseLifeBoard.CellMap();  // Value is index in allCells, plus 1.
+        List<Long> allCells = new ArrayList<>();
+        for ( int p = 0; p < period; p++ ) {
+            for ( long cell : board.getLivingCells() ) {
+                if ( everAlive.get( cell ) == 0 ) {
+                    allCells.add( cell );
+                    everAlive.put( cell, allCells.size() );
+                }
+            }
+            board.step();  // After period steps, the board is back where it started.
+        }
+        int[] group = groups( toArray( allCells ), everAlive, 2 );
+
+        // Split the cells of the current generation by group, and identify each group.
+        Map<Integer, List<Long>> members = new HashMap<>();
+        for ( long cell : current )
+            members.computeIfAbsent( group[ everAlive.get( cell ) - 1 ], k -> new ArrayList<>() ).add( cell );
+        for ( List<Long> object : members.values() )
+            countObject( toArray( object ), period );
+    }
+
+    /**
+     * Count an object that repeats with a period that divides the given period. If the object is made of parts that
+     * don't touch and don't affect each other, such as the four blinkers of a "traffic light", each part is counted
+     * by itself.
+     */
+    private void countObject( long[] cells, int period ) {
+        List<long[]> parts = split( cells, 1 );
+        if ( parts.size() > 1 ) {
+            String[] codes = new String[ parts.size() ];
+            for ( int i = 0; i < codes.length; i++ )
+                codes[i] = identify( parts.get( i ), period );
+            if ( ! Arrays.asList( codes ).contains( null ) && independent( cells, parts, period ) ) {
+                for ( String code : codes )
+                    counts.computeIfAbsent( code, k -> new LongAdder() ).increment();
+                return;
+            }
+        }
+        String code = identify( cells, period );
+        if ( code == null )
+            unidentified.increment();
+        else
+            counts.computeIfAbsent( code, k -> new LongAdder() ).increment();
+    }
+
+    /**
+     * Return true if running the parts of an object separately for the given number of generations gives the same
+     * cells as running the whole object, so that the parts never affect each other.
+     */
+    private boolean independent( long[] cells, List<long[]> parts, int generations ) {
+        SparseLifeBoard whole = newBoard( cells );
+        SparseLifeBoard[] separate = new SparseLifeBoard[ parts.size() ];
+        for ( int i = 0; i < separate.length; i++ )
+            separate[i] = newBoard( parts.get( i ) );
+        for ( int g = 0; g < generations; g++ ) {
+            whole.step();
+            long population = 0;
+            for ( SparseLifeBoard part : separate ) {
+                part.step();
+                for ( long cell : part.getLivingCells() ) {
+                    if ( ! whole.isAlive( SparseLifeBoard.rowOf( cell ), SparseLifeBoard.colOf( cell ) ) )
+                        return false;
+                }
+                population += part.getPopulation();
+            }
+            if ( population != whole.getPopulation() )
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Look for spaceships that are heading away from everything else on the board, and count and remove them.
+     * Everything else means all the cells that are not parts of spaceships, so that a flotilla of gliders that
+     * travel together is removed once it has left the rest of the soup behind. Returns true if any were removed.
+     */
+    private boolean removeEscapingShips( SparseLifeBoard board ) {
+        List<long[]> ships = new ArrayList<>();  // The cells of each spaceship.
+        List<String> shipCodes = new ArrayList<>();
+        List<int[]> shipMotions = new ArrayList<>();
+        int[] rest = null;  // The bounding box of everything else: top, left, bottom, right.
+        for ( long[] group : split( board.getLivingCells(), 2 ) ) {
+            int[] motion = new int[ 2 ];
+            String code = group.length > MAX_SHIP_CELLS ? null : identify( group, MAX_SHIP_PERIOD, motion );
+            if ( code != null && ( motion[0] != 0 || motion[1] != 0 ) ) {
+                ships.add( group );
+                shipCodes.add( code );
+                shipMotions.add( motion );
+            }
+            else {
+                int[] box = boundingBox( group );
+                if ( rest == null )
+                    rest = box;
+                rest[0] = Math.min( rest[0], box[0] );
+                rest[1] = Math.min( rest[1], box[1] );
+                rest[2] = Math.max( rest[2], box[2] );
+                rest[3] = Math.max( rest[3], box[3] );
+            }
+        }
+
+        boolean removed = false;
+        for ( int i = 0; i < ships.size(); i++ ) {
+            int[] box = boundingBox( ships.get( i ) );
+            int[] motion = shipMotions.get( i );
+            boolean away = rest == null || ( motion[0] > 0 && box[0] > rest[2] + ESCAPE_MARGIN )
+                           || ( motion[0] < 0 && box[2] < rest[0] - ESCAPE_MARGIN )
+                           || ( motion[1] > 0 && box[1] > rest[3] + ESCAPE_MARGIN )
+                           || ( motion[1] < 0 && box[3] < rest[1] - ESCAPE_MARGIN );
+            if ( away ) {
+                for ( long cell : ships.get( i ) )
+                    board.setAlive( SparseLifeBoard.rowOf( cell ), SparseLifeBoard.colOf( cell ), false );
+                counts.computeIfAbsent( shipCodes.get( i ), k -> new LongAdder() ).increment();
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Return the bounding box of some cells, as { top, left, bottom, right }.
+     */
+    private static int[] boundingBox( long[] cells ) {
+        int[] box = { Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE };
+        for ( long cell : cells ) {
+            box[0] = Math.min( box[0], SparseLifeBoard.rowOf( cell ) );
+            box[1] = Math.min( box[1], SparseLifeBoard.colOf( cell ) );
+            box[2] = Math.max( box[2], SparseLifeBoard.rowOf( cell ) );
+            box[3] = Math.max( box[3], SparseLifeBoard.colOf( cell ) );
+        }
+        return box;
+    }
+
+    /**
+     * Divide cells into groups of cells that are within the given distance of each other, and return the cells of
+     * each group.
+     */
+    private static List<long[]> split( long[] cells, int distance ) {
+        SparseLifeBoard.CellMap index = new SparseLifeBoard.CellMap();
+        for ( int i = 0; i < cells.length; i++ )
+            index.put( cells[i], i + 1 );
+        int[] group = groups( cells, index, distance );
+        Map<Integer, List<Long>> members = new HashMap<>();
+        for ( int i = 0; i < cells.length; i++ )
+            members.computeIfAbsent( group[i], k -> new ArrayList<>() ).add( cells[i] );
+        List<long[]> parts = new ArrayList<>();
+        for ( List<Long> part : members.values() )
+            parts.add( toArray( part ) );
+        return parts;
+    }
+
+    /**
+     * Divide cells into groups, putting two cells in the same group if they are within the given number of rows and
+     * columns of each other. index gives the position in the array of each cell, plus one. The return value gives the
+     * group of each cell, as the position of one of the cells of the group.
+     */
+    private static int[] groups( long[] cells, SparseLifeBoard.CellMap index, int distance ) {
+        int[] parent = new int[ cells.length ];
+        for ( int i = 0; i < parent.length; i++ )
+            parent[i] = i;
+        for ( int i = 0; i < cells.length; i++ ) {
+            int row = SparseLifeBoard.rowOf( cells[i] );
+            int col = SparseLifeBoard.colOf( cells[i] );
+            for ( int dr = -distance; dr <= distance; dr++ ) {
+                for ( int dc = -distance; dc <= distance; dc++ ) {
+                    int j = index.get( SparseLifeBoard.key( row + dr, col + dc ) ) - 1;
+                    if ( j >= 0 )
+                        parent[ root( parent, i ) ] = root( parent, j );
+                }
+            }
+        }
+        for ( int i = 0; i < parent.length; i++ )
+            parent[i] = root( parent, i );
+        return parent;
+    }
+
+    private static int root( int[] parent, int i ) {
+        while ( parent[i] != i ) {
+            parent[i] = parent[ parent[i] ];  // Halve the path on the way up.
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * Return the code of an object that repeats with a period that divides maxPeriod, or null if it does not repeat
+     * within maxPeriod generations when it is run by itself.
+     */
+    private String identify( long[] cells, int maxPeriod ) {
+        return identify( cells, maxPeriod, new int[ 2 ] );
+    }
+
+    /**
+     * Return the code of an object that repeats within maxPeriod generations when it is run by itself, possibly in
+     * another place, or null if it doesn't. The distance that the object moves in each period, in rows and columns,
+     * is stored in motion.
+     */
+    private String identify( long[] cells, int maxPeriod, int[] motion ) {
+        SparseLifeBoard board = newBoard( cells );
+        int[][] start = normalize( cells, motion );
+        int startRow = motion[0];
+        int startCol = motion[1];
+        List<int[][]> phases = new ArrayList<>();
+        phases.add( start );
+        for ( int p = 1; p <= maxPeriod; p++ ) {
+            board.step();
+            long[] now = board.getLivingCells();
+            if ( now.length == 0 )
+                return null;
+            int[][] shape = normalize( now, motion );
+            if ( Arrays.deepEquals( shape, start ) ) {
+                motion[0] -= startRow;
+                motion[1] -= startCol;
+                String prefix;
+                if ( motion[0] != 0 || motion[1] != 0 )
+                    prefix = "xq" + p;
+                else if ( p == 1 )
+                    prefix = "xs" + cells.length;
+                else
+                    prefix = "xp" + p;
+                return prefix + "_" + canonicalCode( phases );
+            }
+            phases.add( shape );
+        }
+        return null;
+    }
+
+    /**
+     * Return the cells, moved so that their bounding box starts at row 0 and column 0, as an array of { row, column }
+     * pairs in order. The row and column that were subtracted are stored in corner.
+     */
+    private static int[][] normalize( long[] cells, int[] corner ) {
+        int top = Integer.MAX_VALUE;
+        int left = Integer.MAX_VALUE;
+        for ( long cell : cells ) {
+            top = Math.min( top, SparseLifeBoard.rowOf( cell ) );
+            left = Math.min( left, SparseLifeBoard.colOf( cell ) );
+        }
+        corner[0] = top;
+        corner[1] = left;
+        int[][] shape = new int[ cells.length ][];
+        for ( int i = 0; i < cells.length; i++ )
+            shape[i] = new int[] { SparseLifeBoard.rowOf( cells[i] ) - top, SparseLifeBoard.colOf( cells[i] ) - left };
+        Arrays.sort( shape, ( a, b ) -> a[0] != b[0] ? Integer.compare( a[0], b[0] ) : Integer.compare( a[1], b[1] ) );
+        return shape;
+    }
+
+    /**
+     * Return the shortest Wechsler code of any phase of an object in any of its eight orientations, taking the first
+     * in alphabetical order if there is a tie.
+     */
+    private static String canonicalCode( List<int[][]> phases ) {
+        String best = null;
+        for ( int[][] phase : phases ) {
+            for ( int orientation = 0; orientation < 8; orientation++ ) {
+                String code = wechsler( phase, orientation );
+                if ( best == null || code.length() < best.length()
+                     || ( code.length() == best.length() && code.compareTo( best ) < 0 ) )
+                    best = code;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Return the extended Wechsler code of cells in one of eight orientations. The cells are cut into strips of five
+     * rows, and each column of a strip is written as one character, 0-9 or a-v, whose bits are the five cells from
+     * top to bottom. Strips are separated by "z", zeros at the end of a strip are left out, and runs of zeros are
+     * shortened: "w" is 00, "x" is 000, and "y" followed by a character n is n + 4 zeros.
+     */
+    private static String wechsler( int[][] cells, int orientation ) {
+        int height = 0;
+        int width = 0;
+        int[][] turned = new int[ cells.length ][];
+        for ( int i = 0; i < cells.length; i++ ) {
+            int row = cells[i][0];
+            int col = cells[i][1];
+            if ( ( orientation & 4 ) != 0 ) {  // Swap rows and columns.
+                int temp = row;
+                row = col;
+                col = temp;
+            }
+            turned[i] = new int[] { ( orientation & 1 ) != 0 ? -row : row, ( orientation & 2 ) != 0 ? -col : col };
+        }
+        int top = Integer.MAX_VALUE;
+        int left = Integer.MAX_VALUE;
+        for ( int[] cell : turned ) {
+            top = Math.min( top, cell[0] );
+            left = Math.min( left, cell[1] );
+        }
+        for ( int[] cell : turned ) {
+            cell[0] -= top;
+            cell[1] -= left;
+            height = Math.max( height, cell[0] + 1 );
+            width = Math.max( width, cell[1] + 1 );
+        }
+        int[][] strips = new int[ ( height + 4 ) / 5 ][ width ];
+        for ( int[] cell : turned )
+            strips[ cell[0] / 5 ][ cell[1] ] |= 1 << ( cell[0] % 5 );
+
+        StringBuilder code = new StringBuilder();
+        for ( int s = 0; s < strips.length; s++ ) {
+            if ( s > 0 )
+                code.append( 'z' );
+            int end = width;
+            while ( end > 0 && strips[s][end - 1] == 0 )
+                end--;
+            int zeros = 0;
+            for ( int c = 0; c < end; c++ ) {
+                if ( strips[s][c] == 0 ) {
+                    zeros++;
+                    continue;
+                }
+                while ( zeros > 0 ) {  // Write the run of zeros that ends here.
+                    if ( zeros >= 4 ) {
+                        int n = Math.min( zeros, 39 );
+                        code.append( 'y' ).append( CODE_DIGITS.charAt( n - 4 ) );
+                        zeros -= n;
+                    }
+                    else {
+                        code.append( zeros == 3 ? "x" : zeros == 2 ? "w" : "0" );
+                        zeros = 0;
+                    }
+                }
+                code.append( CODE_DIGITS.charAt( strips[s][c] ) );
+            }
+        }
+        return code.toString();
+    }
+
+    /**
+     * Give a name to the object that is drawn by the given rows, with "o" for a living cell, if it is an object under
+     * this census's rule.
+     */
+    private void nameObject( String name, String... rows ) {
+        List<Long> cells = new ArrayList<>();
+        for ( int r = 0; r < rows.length; r++ ) {
+            for ( int c = 0; c < rows[r].length(); c++ ) {
+                if ( rows[r].charAt( c ) == 'o' )
+                    cells.add( SparseLifeBoard.key( r, c ) );
+            }
+        }
+        String code = identify( toArray( cells ), 16 );
+        if ( code != null )
+            names.putIfAbsent( code, name );
+    }
+
+    /**
+     * Return a board that follows this census's rule, with the given cells alive.
+     */
+    private SparseLifeBoard newBoard( long[] cells ) {
+        SparseLifeBoard board = new SparseLifeBoard( 1, 1 );
+        board.setRule( rule );
+        for ( long cell : cells )
+            board.setAlive( SparseLifeBoard.rowOf( cell ), SparseLifeBoard.colOf( cell ), true );
+        return board;
+    }
+
+    private static long[] toArray( List<Long> list ) {
+        long[] array = new long[ list.size() ];
+        for ( int i = 0; i < array.length; i++ )
+            array[i] = list.get( i );
+        return array;
+    }
+
+}  // end class SoupCensus.
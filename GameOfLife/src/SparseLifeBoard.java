@@ -0,0 +1,303 @@
+import java.util.Arrays;
+
+/**
+ * A LifeBoard that stores only the living cells, in a hash table of packed coordinates. The universe has no edges:
+ * a cell can be at any int row and column, and the rows and columns of the board only define a window onto the
+ * universe, with row 0 and column 0 at the top left corner of the window.
+ *
+ * To compute the next generation, every living cell adds one to the neighbor count of each of its eight neighbors in
+ * a second hash table. Only cells that have at least one living neighbor, or are alive themselves, ever appear in
+ * that table, so the cost of a step is proportional to the population, not to the area that the pattern covers. A
+ * pattern that sends gliders off into empty space uses memory and time only for the gliders themselves. For the same
+ * reason, the board can't follow a rule in which cells with no living neighbors come to life.
+ */
+public class SparseLifeBoard implements LifeBoard {
+
+    private static final int ALIVE = 16;  // Added to the count of a cell that is alive now; counts are 0 to 8.
+
+    private final int rows;  // Number of rows in the window.
+    private final int columns;  // Number of columns in the window.
+
+    private CellMap live = new CellMap();  // The living cells. The value stored for each of them is ALIVE.
+    private CellMap nextLive = new CellMap();  // Space for building the next generation.
+    private final CellMap counts = new CellMap();  // Neighbor counts, plus ALIVE for living cells, during a step.
+    private LifeRule rule = LifeRule.CONWAY;  // The rule that gives the next state of each cell.
+
+    /**
+     * Create a board that shows the given number of rows and columns of the universe, in which every cell is dead.
+     */
+    public SparseLifeBoard( int rows, int columns ) {
+        if ( rows <= 0 || columns <= 0 )
+            throw new IllegalArgumentException( "Rows and columns must be greater than zero." );
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    public int getColumnCount() {
+        return columns;
+    }
+
+    public boolean isAlive( int row, int col ) {
+        return live.get( key( row, col ) ) != 0;
+    }
+
+    public void setAlive( int row, int col, boolean alive ) {
+        if ( alive )
+            live.put( key( row, col ), ALIVE );
+        else
+            live.remove( key( row, col ) );
+    }
+
+    public void clear() {
+        live.reset();  // Give back the space of a big pattern, so that later steps don't have to scan it.
+        nextLive.reset();
+        counts.reset();
+    }
+
+    public LifeRule getRule() {
+        return rule;
+    }
+
+    /**
+     * Set the rule.
+     * @throws IllegalArgumentException if cells with no living neighbors come to life under the rule.
+     */
+    public void setRule( LifeRule rule ) {
+        if ( rule.isBirthOnZero() )
+            throw new IllegalArgumentException( "A board without edges can't follow the rule " + rule.getNotation() );
+        this.rule = rule;
+    }
+
+    /**
+     * Return the number of living cells in the whole universe, including cells outside the window.
+     */
+    public long getPopulation() {
+        return live.size();
+    }
+
+    /**
+     * Return the hash of all the living cells in the universe, including cells outside the window. This takes time
+     * proportional to the number of living cells.
+     */
+    public long getHash() {
+        long hash = 0;
+        for ( int i = 0; i < live.keys.length; i++ ) {
+            if ( live.values[i] != 0 )
+                hash ^= LifeBoard.cellHash( rowOf( live.keys[i] ), colOf( live.keys[i] ) );
+        }
+        return hash;
+    }
+
+    /**
+     * Return the living cells in the whole universe, in no particular order. Each cell is packed into a long, with
+     * its row in the high 32 bits and its column in the low 32 bits.
+     */
+    public long[] getLivingCells() {
+        long[] cells = new long[ live.size() ];
+        int n = 0;
+        for ( int i = 0; i < live.keys.length; i++ ) {
+            if ( live.values[i] != 0 )
+                cells[n++] = live.keys[i];
+        }
+        return cells;
+    }
+
+    public void step() {
+        counts.clear();
+        long[] keys = live.keys;
+        int[] values = live.values;
+        for ( int i = 0; i < keys.length; i++ ) {
+            if ( values[i] == 0 )
+                continue;
+            long cell = keys[i];
+            int row = rowOf( cell );
+            int col = colOf( cell );
+            counts.add( cell, ALIVE );
+            counts.add( key( row - 1, col - 1 ), 1 );
+            counts.add( key( row - 1, col ), 1 );
+            counts.add( key( row - 1, col + 1 ), 1 );
+            counts.add( key( row, col - 1 ), 1 );
+            counts.add( key( row, col + 1 ), 1 );
+            counts.add( key( row + 1, col - 1 ), 1 );
+            counts.add( key( row + 1, col ), 1 );
+            counts.add( key( row + 1, col + 1 ), 1 );
+        }
+        nextLive.clear();
+        keys = counts.keys;
+        values = counts.values;
+        final LifeRule rule = this.rule;
+        for ( int i = 0; i < keys.length; i++ ) {
+            int v = values[i];
+            if ( v != 0 && rule.nextState( v >= ALIVE, v & ( ALIVE - 1 ) ) )
+                nextLive.put( keys[i], ALIVE );
+        }
+        CellMap temp = live;
+        live = nextLive;
+        nextLive = temp;
+    }
+
+    /**
+     * Pack a row and column into a single long, with the row in the high 32 bits.
+     */
+    static long key( int row, int col ) {
+        return ( (long) row << 32 ) | ( col & 0xFFFFFFFFL );
+    }
+
+    static int rowOf( long key ) {
+        return (int) ( key >> 32 );
+    }
+
+    static int colOf( long key ) {
+        return (int) key;
+    }
+
+    //---------------------------------------------------------------------------------------------------------------
+
+    /**
+     * A hash table that maps packed cell coordinates to int values, using open addressing with linear probing. A
+     * value of zero means that the slot is empty, so zero can't be stored as a value. The arrays are reused when the
+     * table is cleared, so a table that has reached its working size does not allocate any more memory. But when a
+     * table is cleared while it holds far fewer entries than it has room for, it is made smaller, so that scanning
+     * the table always takes time in proportion to the number of entries it held the last time it was filled, and not
+     * to the largest number it has ever held.
+     */
+    static final class CellMap {
+
+        private static final int MIN_CAPACITY = 64;
+
+        long[] keys = new long[ MIN_CAPACITY ];
+        int[] values = new int[ MIN_CAPACITY ];
+        private int size;  // Number of slots in use.
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Remove all the entries. If the table had more than 16 times as many slots as entries, it is replaced by one
+         * with 4 times as many slots as entries, which still leaves room to refill it to the same size without
+         * growing.
+         */
+        void clear() {
+            int capacity = MIN_CAPACITY;
+            while ( capacity < 4 * size )
+                capacity *= 2;
+            if ( keys.length > 4 * capacity ) {
+                keys = new long[ capacity ];
+                values = new int[ capacity ];
+                size = 0;
+            }
+            else if ( size > 0 ) {
+                Arrays.fill( values, 0 );
+                size = 0;
+            }
+        }
+
+        /**
+         * Remove all the entries, and go back to the smallest size.
+         */
+        void reset() {
+            if ( keys.length > MIN_CAPACITY ) {
+                keys = new long[ MIN_CAPACITY ];
+                values = new int[ MIN_CAPACITY ];
+            }
+            else {
+                Arrays.fill( values, 0 );
+            }
+            size = 0;
+        }
+
+        int get( long key ) {
+            int mask = keys.length - 1;
+            for ( int i = slot( key, mask ); values[i] != 0; i = ( i + 1 ) & mask ) {
+                if ( keys[i] == key )
+                    return values[i];
+            }
+            return 0;
+        }
+
+        void put( long key, int value ) {
+            int i = find( key );
+            if ( values[i] == 0 )
+                insertAt( i, key, value );
+            else
+                values[i] = value;
+        }
+
+        void add( long key, int amount ) {
+            int i = find( key );
+            if ( values[i] == 0 )
+                insertAt( i, key, amount );
+            else
+                values[i] += amount;
+        }
+
+        void remove( long key ) {
+            int mask = keys.length - 1;
+            int i = find( key );
+            if ( values[i] == 0 )
+                return;
+            values[i] = 0;
+            size--;
+
+            // Move later entries of the same probe sequence back, so that lookups don't stop at the new hole.
+            for ( int j = ( i + 1 ) & mask; values[j] != 0; j = ( j + 1 ) & mask ) {
+                int home = slot( keys[j], mask );
+                boolean stays = i <= j ? ( i < home && home <= j ) : ( i < home || home <= j );
+                if ( ! stays ) {
+                    keys[i] = keys[j];
+                    values[i] = values[j];
+                    values[j] = 0;
+                    i = j;
+                }
+            }
+        }
+
+        /**
+         * Return the slot that holds the key, or the empty slot where it would be inserted.
+         */
+        private int find( long key ) {
+            int mask = keys.length - 1;
+            int i = slot( key, mask );
+            while ( values[i] != 0 && keys[i] != key )
+                i = ( i + 1 ) & mask;
+            return i;
+        }
+
+        private void insertAt( int i, long key, int value ) {
+            keys[i] = key;
+            values[i] = value;
+            size++;
+            if ( size > keys.length >>> 1 )
+                grow();
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[ oldKeys.length * 2 ];
+            values = new int[ oldValues.length * 2 ];
+            int mask = keys.length - 1;
+            for ( int j = 0; j < oldKeys.length; j++ ) {
+                if ( oldValues[j] != 0 ) {
+                    int i = slot( oldKeys[j], mask );
+                    while ( values[i] != 0 )
+                        i = ( i + 1 ) & mask;
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+
+        private static int slot( long key, int mask ) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) ( h ^ ( h >>> 32 ) ) & mask;  // Fold the well-mixed high bits into the low bits.
+        }
+
+    }  // end nested class CellMap.
+
+}  // end class SparseLifeBoard.
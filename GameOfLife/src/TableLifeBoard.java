@@ -0,0 +1,263 @@
+import java.util.Arrays;
+
+/**
+ * A LifeBoard that computes the next generation two rows and two columns at a time, with a lookup table. The next
+ * state of a 2 by 2 block of cells depends only on the 4 by 4 square of cells around it, which is 16 bits, so a table
+ * of 65536 entries can hold the result for every possible square. The table takes 64 KB, which fits in the processor's
+ * cache, and it is built from the board's LifeRule when the rule is set, so every rule runs at the same speed. Each
+ * step then does one table lookup for every four cells, instead of counting neighbors and testing the count for each
+ * cell.
+ *
+ * The cells are stored one bit per cell, in rows of longs. Each row has a border of two bits on the left and two bits
+ * on the right, and there is a border row above the board and two below it. Before each generation is computed, the
+ * border is filled with copies of the cells on the opposite edges, so the board wraps around like a torus without any
+ * special cases in the inner loop. The extra border row and column on the bottom and right are there for boards with
+ * an odd number of rows or columns, whose last blocks stick out past the edge of the board. Column c is stored at
+ * bit position c + 2, so the two cells of a block row, which start at an even column, never fall into different
+ * words. An extra word at the end of each row lets the four bits of a square row be read from two words without
+ * checking whether the second word is needed.
+ *
+ * As in the other array boards, two arrays are allocated when the board is created, and each generation is computed
+ * from one into the other, so stepping does not allocate any memory.
+ *
+ * As in a PackedLifeBoard, the first call to getHash() computes the hash from scratch, and after that setAlive() and
+ * step() keep it up to date. Each new word of the next generation is XORed with the old one, and only the cells whose
+ * bits differ have their hashes XORed into the hash.
+ */
+public class TableLifeBoard implements LifeBoard {
+
+    private final int rows;  // Number of rows on the board.
+    private final int columns;  // Number of columns on the board.
+    private final int wordsPerRow;  // Number of longs in each row of the arrays, including the border and extra word.
+
+    private long[] cells;  // The current generation. Cell ( r, c ) is bit ( c+2 ) of row r+1.
+    private long[] next;  // Space for computing the next generation.
+    private final long[] columnMasks;  // columnMasks[w] has the bits of word w of a row that hold cells of the board.
+
+    private LifeRule rule;  // The rule that the table was built from.
+    private final byte[] table = new byte[ 1 << 16 ];  // The next state of each 2 by 2 block, for each 4 by 4 square.
+    private boolean hashing;  // Set to true by the first call to getHash(); after that, hash is kept up to date.
+    private long hash;  // The hash of the current generation, if hashing is true.
+
+    /**
+     * Create a board with the given number of rows and columns, in which every cell is dead.
+     */
+    public TableLifeBoard( int rows, int columns ) {
+        if ( rows <= 0 || columns <= 0 )
+            throw new IllegalArgumentException( "Rows and columns must be greater than zero." );
+        this.rows = rows;
+        this.columns = columns;
+        wordsPerRow = ( ( columns + 4 + 63 ) >>> 6 ) + 1;
+        cells = new long[ ( rows + 3 ) * wordsPerRow ];
+        next = new long[ ( rows + 3 ) * wordsPerRow ];
+        columnMasks = new long[ wordsPerRow ];
+        for ( int c = 0; c < columns; c++ )
+            columnMasks[ ( c + 2 ) >>> 6 ] |= 1L << ( c + 2 );
+        setRule( LifeRule.CONWAY );
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    public int getColumnCount() {
+        return columns;
+    }
+
+    public boolean isAlive( int row, int col ) {
+        return ( cells[ index( row, col ) ] & ( 1L << ( col + 2 ) ) ) != 0;  // Shift distances are taken mod 64.
+    }
+
+    public void setAlive( int row, int col, boolean alive ) {
+        int i = index( row, col );
+        if ( hashing && ( ( cells[i] & ( 1L << ( col + 2 ) ) ) != 0 ) != alive )
+            hash ^= LifeBoard.cellHash( row, col );
+        if ( alive )
+            cells[i] |= 1L << ( col + 2 );
+        else
+            cells[i] &= ~( 1L << ( col + 2 ) );
+    }
+
+    public void clear() {
+        Arrays.fill( cells, 0 );
+        hash = 0;
+    }
+
+    /**
+     * Return the hash of the board, as described in the LifeBoard interface. The first call looks at every living
+     * cell, and turns on the incremental updating of the hash in all later steps and edits.
+     */
+    public long getHash() {
+        if ( ! hashing ) {
+            hash = 0;
+            for ( int r = 0; r < rows; r++ ) {
+                for ( int w = 0; w < wordsPerRow; w++ )
+                    hash ^= hashBits( r, w, cells[ ( r + 1 ) * wordsPerRow + w ] & columnMasks[w] );
+            }
+            hashing = true;
+        }
+        return hash;
+    }
+
+    /**
+     * Return the XOR of the hashes of the cells in the given board row whose bits are set in the given bits of word
+     * w of that row.
+     */
+    private static long hashBits( int row, int w, long bits ) {
+        long h = 0;
+        while ( bits != 0 ) {
+            h ^= LifeBoard.cellHash( row, w * 64 + Long.numberOfTrailingZeros( bits ) - 2 );
+            bits &= bits - 1;
+        }
+        return h;
+    }
+
+    public long getPopulation() {
+        long population = 0;
+        for ( int r = 1; r <= rows; r++ ) {
+            for ( int w = 0; w < wordsPerRow; w++ )
+                population += Long.bitCount( cells[ r * wordsPerRow + w ] & columnMasks[w] );
+        }
+        return population;
+    }
+
+    public LifeRule getRule() {
+        return rule;
+    }
+
+    /**
+     * Set the rule, and rebuild the lookup table for it.
+     */
+    public void setRule( LifeRule rule ) {
+        for ( int square = 0; square < table.length; square++ ) {
+            int result = 0;
+            for ( int i = 0; i < 4; i++ ) {
+                int y = 1 + ( i >> 1 );  // Position of the cell in the square.
+                int x = 1 + ( i & 1 );
+                int n = 0;
+                for ( int dy = -1; dy <= 1; dy++ ) {
+                    for ( int dx = -1; dx <= 1; dx++ ) {
+                        if ( dx != 0 || dy != 0 )
+                            n += squareBit( square, y + dy, x + dx );
+                    }
+                }
+                if ( rule.nextState( squareBit( square, y, x ) != 0, n ) )
+                    result |= 1 << i;
+            }
+            table[square] = (byte) result;
+        }
+        this.rule = rule;
+    }
+
+    /**
+     * Return the cell at row y, column x of a 4 by 4 square that is used as an index into the table. Row y of the
+     * square is in bits 4*y through 4*y + 3, with the leftmost cell in the lowest bit.
+     */
+    private static int squareBit( int square, int y, int x ) {
+        return ( square >>> ( 4 * y + x ) ) & 1;
+    }
+
+    /**
+     * Compute the next generation, one 2 by 2 block at a time. The blocks are taken one word of the next generation
+     * at a time: the words of the four rows of squares that cover that word are loaded once, and shifted to line up
+     * with the first square, so that the four bits of each square row can be taken from a single long.
+     */
+    public void step() {
+        fillBorder();
+        final int wpr = wordsPerRow;
+        final int lastQ = columns + 1;  // Bit position of the last column, which the last block contains or precedes.
+        final boolean hashing = this.hashing;
+        long hashChange = 0;  // The XOR of the hashes of the cells that change.
+        for ( int r = 0; r < rows; r += 2 ) {
+            int top = r * wpr;  // The first of the four rows of the squares, which is the row above board row r.
+            for ( int w = 0; w <= lastQ >>> 6; w++ ) {
+                long x0 = lineUp( top + w, w );  // Bit j of xi is the cell at position 64*w + j - 1 in row i.
+                long x1 = lineUp( top + wpr + w, w );
+                long x2 = lineUp( top + 2 * wpr + w, w );
+                long x3 = lineUp( top + 3 * wpr + w, w );
+                long bits0 = 0;  // The next generation of this word, in board rows r and r + 1.
+                long bits1 = 0;
+                int first = w == 0 ? 2 : 0;  // Bit position, within the word, of the first block's first column.
+                int last = Math.min( 62, lastQ - 64 * w );
+                for ( int q = first; q <= last; q += 2 ) {
+                    int square;
+                    if ( q < 62 ) {
+                        square = (int) ( ( x0 >>> q ) & 15 ) | (int) ( ( ( x1 >>> q ) & 15 ) << 4 )
+                                 | (int) ( ( ( x2 >>> q ) & 15 ) << 8 ) | (int) ( ( ( x3 >>> q ) & 15 ) << 12 );
+                    }
+                    else {  // The last square row in the word reaches into the next word.
+                        square = lastBits( top + w ) | ( lastBits( top + wpr + w ) << 4 )
+                                 | ( lastBits( top + 2 * wpr + w ) << 8 ) | ( lastBits( top + 3 * wpr + w ) << 12 );
+                    }
+                    int result = table[square];
+                    bits0 |= (long) ( result & 3 ) << q;
+                    bits1 |= (long) ( ( result >>> 2 ) & 3 ) << q;
+                }
+                next[top + wpr + w] = bits0;
+                next[top + 2 * wpr + w] = bits1;
+                if ( hashing ) {
+                    hashChange ^= hashBits( r, w, ( bits0 ^ cells[top + wpr + w] ) & columnMasks[w] );
+                    if ( r + 1 < rows )
+                        hashChange ^= hashBits( r + 1, w, ( bits1 ^ cells[top + 2 * wpr + w] ) & columnMasks[w] );
+                }
+            }
+        }
+        hash ^= hashChange;
+        long[] temp = cells;
+        cells = next;
+        next = temp;
+    }
+
+    /**
+     * Return the word at index i, shifted left by one bit, with the top bit of the previous word in the row moved
+     * into the bottom bit. w is the position of the word in its row.
+     */
+    private long lineUp( int i, int w ) {
+        return ( cells[i] << 1 ) | ( w > 0 ? cells[i - 1] >>> 63 : 0 );
+    }
+
+    /**
+     * Return the bits at positions 61 through 63 of the word at index i, and bit 0 of the next word, which make up
+     * the last square row that starts in that word.
+     */
+    private int lastBits( int i ) {
+        return (int) ( ( ( cells[i] >>> 61 ) | ( cells[i + 1] << 3 ) ) & 15 );
+    }
+
+    /**
+     * Copy the cells along each edge of the board into the border on the opposite side. The columns are done first,
+     * so that copying the rows also fills in the corners. If the board has only one row or column, its border is
+     * filled with copies of that row or column.
+     */
+    private void fillBorder() {
+        int last = columns + 1;  // Bit position of the last column.
+        for ( int r = 1; r <= rows; r++ ) {
+            int base = r * wordsPerRow;
+            copyBit( base, last, 1 );
+            copyBit( base, 2, columns + 2 );
+            copyBit( base, 2 + 1 % columns, columns + 3 );
+        }
+        System.arraycopy( cells, rows * wordsPerRow, cells, 0, wordsPerRow );
+        System.arraycopy( cells, wordsPerRow, cells, ( rows + 1 ) * wordsPerRow, wordsPerRow );
+        System.arraycopy( cells, ( 1 + 1 % rows ) * wordsPerRow, cells, ( rows + 2 ) * wordsPerRow, wordsPerRow );
+    }
+
+    /**
+     * In the row that starts at index base, copy the bit at position from to position to.
+     */
+    private void copyBit( int base, int from, int to ) {
+        long bit = ( cells[ base + ( from >>> 6 ) ] >>> from ) & 1;
+        int i = base + ( to >>> 6 );
+        cells[i] = ( cells[i] & ~( 1L << to ) ) | ( bit << to );
+    }
+
+    /**
+     * Return the index of the word that holds a cell.
+     */
+    private int index( int row, int col ) {
+        if ( row < 0 || row >= rows || col < 0 || col >= columns )
+            throw new IndexOutOfBoundsException( "No cell at row " + row + ", column " + col );
+        return ( row + 1 ) * wordsPerRow + ( ( col + 2 ) >>> 6 );
+    }
+
+}  // end class TableLifeBoard.